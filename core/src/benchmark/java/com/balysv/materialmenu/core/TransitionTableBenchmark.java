@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the per frame geometry cost of every icon transition on a plain JVM. Each
+ * transition, stroke and layout direction is sampled at offsets spread over the whole
+ * 0 to 2 range, the way a drawable samples it while animating, and reported in
+ * nanoseconds and allocated bytes per {@link TransitionTable#sampleLines} call.
+ * <p/>
+ * Run with {@code ./gradlew :core:benchmark}.
+ */
+public final class TransitionTableBenchmark {
+
+    private static final String[] TRANSITIONS = {
+        "BURGER_ARROW", "BURGER_X", "ARROW_X", "ARROW_CHECK", "BURGER_CHECK", "X_CHECK"
+    };
+    private static final String[] STROKES     = { "REGULAR", "THIN", "EXTRA_THIN" };
+
+    // 3x density at scale 1, the most common drawable size
+    private static final float DIP          = 3;
+    private static final int   SIZE         = 120;
+    private static final float ICON_WIDTH   = 60;
+    private static final int   OFFSETS      = 256;
+    private static final int   WARMUP_OPS   = 2000000;
+    private static final long  MEASURE_NANOS = 200000000L;
+
+    private final float[] frame = new float[TransitionTable.FRAME_SIZE];
+    private final float[] lines = new float[TransitionTable.LINES_SIZE];
+    private final float[] offsets = new float[OFFSETS];
+
+    // consumed results, so the JIT can not drop the sampling
+    private float sink;
+
+    private TransitionTableBenchmark() {
+        for (int i = 0; i < OFFSETS; i++) {
+            offsets[i] = 2f * i / (OFFSETS - 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        new TransitionTableBenchmark().run();
+    }
+
+    private void run() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) threads
+            : null;
+        final long thread = Thread.currentThread().getId();
+
+        System.out.println(String.format("%-14s %-11s %-5s %10s %10s", "transition", "stroke", "rtl", "ns/op", "B/op"));
+        for (int stroke = 0; stroke < STROKES.length; stroke++) {
+            final TransitionTable table = new TransitionTable(stroke, SIZE, SIZE, ICON_WIDTH, DIP);
+            for (int state = 0; state < TRANSITIONS.length; state++) {
+                for (boolean rtl : new boolean[] { false, true }) {
+                    sample(table, state, rtl, WARMUP_OPS);
+
+                    final long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+                    final long start = System.nanoTime();
+                    long ops = 0;
+                    long elapsed;
+                    do {
+                        ops += sample(table, state, rtl, OFFSETS * 64);
+                        elapsed = System.nanoTime() - start;
+                    } while (elapsed < MEASURE_NANOS);
+                    final long allocatedAfter = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+
+                    System.out.println(String.format(
+                        "%-14s %-11s %-5s %10.2f %10s",
+                        TRANSITIONS[state], STROKES[stroke], rtl, (double) elapsed / ops,
+                        allocations != null ? String.format("%.3f", (double) (allocatedAfter - allocatedBefore) / ops) : "n/a"
+                    ));
+                }
+            }
+        }
+        System.out.println("checksum " + sink);
+    }
+
+    private int sample(TransitionTable table, int state, boolean rtl, int ops) {
+        float sum = 0;
+        for (int op = 0; op < ops; op++) {
+            table.sampleLines(state, offsets[op % OFFSETS], rtl, frame, lines);
+            sum += lines[TransitionTable.LINE_STOP_X];
+        }
+        sink += sum;
+        return ops;
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu.core;
+
+/**
+ * Line geometry of every icon transition sampled into keyframes once for given
+ * drawable dimensions. Drawing a frame is then a table lookup and a linear
+ * interpolation instead of resolving rotations, pivots and end points from scratch.
+ * <p/>
+ * Free of Android dependencies, so any renderer or a plain JVM can sample icons.
+ * Transitions and strokes are identified by the ordinals of
+ * {@code MaterialMenuDrawable.AnimationState} and {@code MaterialMenuDrawable.Stroke}.
+ */
+public final class TransitionTable {
+
+    public static final int BURGER_ARROW     = 0;
+    public static final int BURGER_X         = 1;
+    public static final int ARROW_X          = 2;
+    public static final int ARROW_CHECK      = 3;
+    public static final int BURGER_CHECK     = 4;
+    public static final int X_CHECK          = 5;
+    public static final int TRANSITION_COUNT = 6;
+
+    public static final int STROKE_REGULAR    = 0;
+    public static final int STROKE_THIN       = 1;
+    public static final int STROKE_EXTRA_THIN = 2;
+
+    public static final int LINE_TOP    = 0;
+    public static final int LINE_MIDDLE = 1;
+    public static final int LINE_BOTTOM = 2;
+    public static final int LINE_COUNT  = 3;
+
+    public static final int ROTATION    = 0;
+    public static final int PIVOT_X     = 1;
+    public static final int PIVOT_Y     = 2;
+    public static final int ROTATION_2  = 3;
+    public static final int PIVOT_X_2   = 4;
+    public static final int PIVOT_Y_2   = 5;
+    public static final int START_X     = 6;
+    public static final int START_Y     = 7;
+    public static final int STOP_X      = 8;
+    public static final int STOP_Y      = 9;
+    public static final int ALPHA       = 10;
+    // coefficient of the squared ratio added to STOP_X, the only parameter not linear in ratio
+    public static final int STOP_X_SQ   = 11;
+    public static final int PARAM_COUNT = 12;
+
+    public static final int FRAME_SIZE = LINE_COUNT * PARAM_COUNT;
+
+    public static final int LINE_START_X = 0;
+    public static final int LINE_START_Y = 1;
+    public static final int LINE_STOP_X  = 2;
+    public static final int LINE_STOP_Y  = 3;
+    public static final int LINE_ALPHA   = 4;
+    public static final int LINE_STRIDE  = 5;
+
+    public static final int LINES_SIZE = LINE_COUNT * LINE_STRIDE;
+
+    private static final float ARROW_MID_LINE_ANGLE = 180;
+    private static final float ARROW_TOP_LINE_ANGLE = 135;
+    private static final float ARROW_BOT_LINE_ANGLE = 225;
+    private static final float X_TOP_LINE_ANGLE     = 44;
+    private static final float X_BOT_LINE_ANGLE     = -44;
+    private static final float X_ROTATION_ANGLE     = 90;
+    private static final float CHECK_MIDDLE_ANGLE   = 135;
+    private static final float CHECK_BOTTOM_ANGLE   = -90;
+
+    // parameters are linear in ratio apart from STOP_X_SQ, which is constant and applied
+    // when sampling, so both ends of a transition describe it exactly
+    private static final int KEYFRAME_COUNT  = 2;
+    private static final int DIRECTION_COUNT = 2;
+
+    private final float diph;
+    private final float dip1;
+    private final float dip2;
+    private final float dip3;
+    private final float dip4;
+    private final float dip8;
+
+    private final int   width;
+    private final int   height;
+    private final float topPadding;
+    private final float sidePadding;
+    private final int   stroke;
+
+    private final float[] keyframes;
+
+    /**
+     * @param stroke    one of the {@code STROKE_} constants
+     * @param width     drawable width in pixels
+     * @param height    drawable height in pixels
+     * @param iconWidth width of the icon lines in pixels
+     * @param dip1      pixels per dip
+     */
+    public TransitionTable(int stroke, int width, int height, float iconWidth, float dip1) {
+        this.dip1 = dip1;
+        this.dip2 = dip1 * 2;
+        this.dip3 = dip1 * 3;
+        this.dip4 = dip1 * 4;
+        this.dip8 = dip1 * 8;
+        this.diph = dip1 / 2;
+        this.stroke = stroke;
+        this.width = width;
+        this.height = height;
+        this.sidePadding = (width - iconWidth) / 2;
+        this.topPadding = (height - 5 * dip3) / 2;
+
+        this.keyframes = new float[TRANSITION_COUNT * DIRECTION_COUNT * KEYFRAME_COUNT * FRAME_SIZE];
+        for (int state = 0; state < TRANSITION_COUNT; state++) {
+            for (int direction = 0; direction < DIRECTION_COUNT; direction++) {
+                for (int keyframe = 0; keyframe < KEYFRAME_COUNT; keyframe++) {
+                    final float ratio = (float) keyframe / (KEYFRAME_COUNT - 1);
+                    final int offset = keyframeOffset(state, direction == 0, keyframe);
+                    computeTopLine(state, direction == 0, ratio, offset + LINE_TOP * PARAM_COUNT);
+                    computeMiddleLine(state, direction == 0, ratio, offset + LINE_MIDDLE * PARAM_COUNT);
+                    computeBottomLine(state, direction == 0, ratio, offset + LINE_BOTTOM * PARAM_COUNT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Interpolates line parameters of a transition into {@code out}
+     *
+     * @param state   transition to sample, one of the transition constants
+     * @param forward true when morphing from first to second state
+     * @param ratio   progress of the transition, between 0 and 1
+     * @param out     array of at least {@link #FRAME_SIZE} elements
+     */
+    public void sample(int state, boolean forward, float ratio, float[] out) {
+        final float position = ratio * (KEYFRAME_COUNT - 1);
+        final int index = Math.max(0, Math.min((int) position, KEYFRAME_COUNT - 2));
+        final float fraction = position - index;
+
+        final int from = keyframeOffset(state, forward, index);
+        final int to = from + FRAME_SIZE;
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            out[i] = keyframes[from + i] + (keyframes[to + i] - keyframes[from + i]) * fraction;
+        }
+        for (int line = 0; line < FRAME_SIZE; line += PARAM_COUNT) {
+            out[line + STOP_X] += out[line + STOP_X_SQ] * ratio * ratio;
+        }
+    }
+
+    /**
+     * Resolves final end points of all lines by applying both rotations of every line
+     * to its end points, so lines can be drawn without transforming the canvas
+     *
+     * @param state transition to sample, one of the transition constants
+     * @param value transformation value, between 0 and 2
+     * @param rtl   true to mirror lines horizontally
+     * @param frame scratch array of at least {@link #FRAME_SIZE} elements
+     * @param out   array of at least {@link #LINES_SIZE} elements receiving
+     *              start x, start y, stop x, stop y and alpha of each line
+     */
+    public void sampleLines(int state, float value, boolean rtl, float[] frame, float[] out) {
+        final boolean forward = value <= 1;
+        sample(state, forward, forward ? value : 2 - value, frame);
+        resolveLines(frame, width, rtl, out);
+    }
+
+    /**
+     * Resolves end points of lines from a frame of line parameters in the layout written by
+     * {@link #sample}, for geometry sampled from other sources than the built-in transitions
+     *
+     * @param frame frame of {@link #FRAME_SIZE} line parameters
+     * @param width width lines are mirrored within
+     * @param rtl   true to mirror lines horizontally
+     * @param out   array of at least {@link #LINES_SIZE} elements receiving
+     *              start x, start y, stop x, stop y and alpha of each line
+     */
+    public static void resolveLines(float[] frame, float width, boolean rtl, float[] out) {
+        for (int line = 0; line < LINE_COUNT; line++) {
+            final int in = line * PARAM_COUNT;
+            final int offset = line * LINE_STRIDE;
+
+            out[offset + LINE_START_X] = frame[in + START_X];
+            out[offset + LINE_START_Y] = frame[in + START_Y];
+            out[offset + LINE_STOP_X] = frame[in + STOP_X];
+            out[offset + LINE_STOP_Y] = frame[in + STOP_Y];
+            out[offset + LINE_ALPHA] = frame[in + ALPHA];
+
+            // canvas concatenates rotations, so the second one is applied to points first
+            rotate(out, offset, frame[in + ROTATION_2], frame[in + PIVOT_X_2], frame[in + PIVOT_Y_2]);
+            rotate(out, offset, frame[in + ROTATION], frame[in + PIVOT_X], frame[in + PIVOT_Y]);
+
+            if (rtl) {
+                out[offset + LINE_START_X] = width - out[offset + LINE_START_X];
+                out[offset + LINE_STOP_X] = width - out[offset + LINE_STOP_X];
+            }
+        }
+    }
+
+    private static void rotate(float[] line, int offset, float degrees, float pivotX, float pivotY) {
+        if (degrees == 0) return;
+
+        final double radians = Math.toRadians(degrees);
+        final float cos = (float) Math.cos(radians);
+        final float sin = (float) Math.sin(radians);
+
+        for (int point = offset; point <= offset + LINE_STOP_X; point += 2) {
+            final float dx = line[point] - pivotX;
+            final float dy = line[point + 1] - pivotY;
+            line[point] = pivotX + dx * cos - dy * sin;
+            line[point + 1] = pivotY + dx * sin + dy * cos;
+        }
+    }
+
+    private static int keyframeOffset(int state, boolean forward, int keyframe) {
+        return ((state * DIRECTION_COUNT + (forward ? 0 : 1)) * KEYFRAME_COUNT + keyframe) * FRAME_SIZE;
+    }
+
+    private void computeMiddleLine(int animationState, boolean forward, float ratio, int offset) {
+        float rotation = 0;
+        float pivotX = width / 2;
+        float pivotY = width / 2;
+        float startX = sidePadding;
+        float startY = topPadding + dip3 / 2 * 5;
+        float stopX = width - sidePadding;
+        float stopY = topPadding + dip3 / 2 * 5;
+        float stopXSquared = 0;
+        float alpha = 255;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                // rotate by 180
+                if (forward) {
+                    rotation = ratio * ARROW_MID_LINE_ANGLE;
+                } else {
+                    rotation = ARROW_MID_LINE_ANGLE + (1 - ratio) * ARROW_MID_LINE_ANGLE;
+                }
+                // shorten one end by ratio * modifier(ratio) / 2, the modifier is linear so this is
+                // the modifier at 1 times ratio squared
+                stopXSquared = -resolveStrokeModifier(animationState, 1) / 2;
+                break;
+            case BURGER_X:
+                // fade out
+                alpha = (1 - ratio) * 255;
+                break;
+            case ARROW_X:
+                // fade out and shorten one end
+                alpha = (1 - ratio) * 255;
+                startX += (1 - ratio) * dip2;
+                break;
+            case ARROW_CHECK:
+                if (forward) {
+                    // rotate until required angle
+                    rotation = ratio * CHECK_MIDDLE_ANGLE;
+                } else {
+                    // rotate back to starting angle
+                    rotation = CHECK_MIDDLE_ANGLE - CHECK_MIDDLE_ANGLE * (1 - ratio);
+                }
+                // shorten one end and lengthen the other
+                startX += dip3 / 2 + dip4 - (1 - ratio) * dip2;
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+            case BURGER_CHECK:
+                // rotate until required angle
+                rotation = ratio * CHECK_MIDDLE_ANGLE;
+                // lengthen both ends
+                startX += ratio * (dip4 + dip3 / 2);
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+            case X_CHECK:
+                // fade in
+                alpha = ratio * 255;
+                // rotation to check angle
+                rotation = ratio * CHECK_MIDDLE_ANGLE;
+                // lengthen both ends
+                startX += ratio * (dip4 + dip3 / 2);
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+        }
+
+        store(offset, rotation, pivotX, pivotY, 0, 0, 0, startX, startY, stopX, stopY, alpha);
+        keyframes[offset + STOP_X_SQ] = stopXSquared;
+    }
+
+    private void computeTopLine(int animationState, boolean forward, float ratio, int offset) {
+        float rotation = 0, pivotX = 0, pivotY = 0;
+        float rotation2 = 0;
+        // pivot at center of line
+        float pivotX2 = width / 2 + dip3 / 2;
+        float pivotY2 = topPadding + dip2;
+
+        float startX = sidePadding;
+        float startY = topPadding + dip2;
+        float stopX = width - sidePadding;
+        float stopY = topPadding + dip2;
+        float alpha = 255;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                if (forward) {
+                    // rotate until required angle
+                    rotation = ratio * ARROW_BOT_LINE_ANGLE;
+                } else {
+                    // rotate back to start doing a 360
+                    rotation = ARROW_BOT_LINE_ANGLE + (1 - ratio) * ARROW_TOP_LINE_ANGLE;
+                }
+                // rotate by middle
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorten both ends
+                stopX -= resolveStrokeModifier(animationState, ratio);
+                startX += dip3 * ratio;
+
+                break;
+            case BURGER_X:
+                // rotate until required angles
+                rotation = X_TOP_LINE_ANGLE * ratio;
+                rotation2 = X_ROTATION_ANGLE * ratio;
+
+                // pivot at left corner of line
+                pivotX = sidePadding + dip4;
+                pivotY = topPadding + dip3;
+
+                // shorten one end
+                startX += dip3 * ratio;
+                break;
+            case ARROW_X:
+                // rotate from ARROW angle to X angle
+                rotation = ARROW_BOT_LINE_ANGLE + (X_TOP_LINE_ANGLE - ARROW_BOT_LINE_ANGLE) * ratio;
+                rotation2 = X_ROTATION_ANGLE * ratio;
+
+                // move pivot from ARROW pivot to X pivot
+                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
+                pivotY = height / 2 + (topPadding + dip3 - height / 2) * ratio;
+
+                // lengthen both ends
+                stopX -= resolveStrokeModifier(animationState, ratio);
+                startX += dip3;
+                break;
+            case ARROW_CHECK:
+                // fade out
+                alpha = (1 - ratio) * 255;
+                // retain starting arrow configuration
+                rotation = ARROW_BOT_LINE_ANGLE;
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorted both ends
+                stopX -= resolveStrokeModifier(animationState, 1);
+                startX += dip3;
+                break;
+            case BURGER_CHECK:
+                // fade out
+                alpha = (1 - ratio) * 255;
+                break;
+            case X_CHECK:
+                // retain X configuration
+                rotation = X_TOP_LINE_ANGLE;
+                rotation2 = X_ROTATION_ANGLE;
+                pivotX = sidePadding + dip4;
+                pivotY = topPadding + dip3;
+                stopX += dip3 - dip3 * (1 - ratio);
+                startX += dip3;
+
+                // fade out
+                alpha = (1 - ratio) * 255;
+                break;
+        }
+
+        store(offset, rotation, pivotX, pivotY, rotation2, pivotX2, pivotY2, startX, startY, stopX, stopY, alpha);
+    }
+
+    private void computeBottomLine(int animationState, boolean forward, float ratio, int offset) {
+        float rotation = 0, pivotX = 0, pivotY = 0;
+        float rotation2 = 0;
+        // pivot at center of line
+        float pivotX2 = width / 2 + dip3 / 2;
+        float pivotY2 = height - topPadding - dip2;
+
+        float startX = sidePadding;
+        float startY = height - topPadding - dip2;
+        float stopX = width - sidePadding;
+        float stopY = height - topPadding - dip2;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                if (forward) {
+                    // rotate to required angle
+                    rotation = ARROW_TOP_LINE_ANGLE * ratio;
+                } else {
+                    // rotate back to start doing a 360
+                    rotation = ARROW_TOP_LINE_ANGLE + (1 - ratio) * ARROW_BOT_LINE_ANGLE;
+                }
+                // pivot center of canvas
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorten both ends
+                stopX = width - sidePadding - resolveStrokeModifier(animationState, ratio);
+                startX = sidePadding + dip3 * ratio;
+                break;
+            case BURGER_X:
+                if (forward) {
+                    // rotate around
+                    rotation2 = -X_ROTATION_ANGLE * ratio;
+                } else {
+                    // rotate directly
+                    rotation2 = X_ROTATION_ANGLE * ratio;
+                }
+                // rotate to required angle
+                rotation = X_BOT_LINE_ANGLE * ratio;
+
+                // pivot left corner of line
+                pivotX = sidePadding + dip4;
+                pivotY = height - topPadding - dip3;
+
+                // shorten one end
+                startX += dip3 * ratio;
+                break;
+            case ARROW_X:
+                // rotate from ARROW angle to X angle
+                rotation = ARROW_TOP_LINE_ANGLE + (360 + X_BOT_LINE_ANGLE - ARROW_TOP_LINE_ANGLE) * ratio;
+                rotation2 = -X_ROTATION_ANGLE * ratio;
+
+                // move pivot from ARROW pivot to X pivot
+                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
+                pivotY = height / 2 + (height / 2 - topPadding - dip3) * ratio;
+
+                // lengthen both ends
+                stopX -= resolveStrokeModifier(animationState, ratio);
+                startX += dip3;
+                break;
+            case ARROW_CHECK:
+                // rotate from ARROW angle to CHECK angle
+                rotation = ARROW_TOP_LINE_ANGLE + ratio * CHECK_BOTTOM_ANGLE;
+
+                // move pivot from ARROW pivot to CHECK pivot
+                pivotX = width / 2 + dip3 * ratio;
+                pivotY = height / 2 - dip3 * ratio;
+
+                // length stays same as ARROW
+                stopX -= resolveStrokeModifier(animationState, 1);
+                startX += dip3 + (dip4 + dip1) * ratio;
+                break;
+            case BURGER_CHECK:
+                // rotate from ARROW angle to CHECK angle
+                rotation = ratio * (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE);
+
+                // move pivot from BURGER pivot to CHECK pivot
+                pivotX = width / 2 + dip3 * ratio;
+                pivotY = height / 2 - dip3 * ratio;
+
+                // length stays same as BURGER
+                startX += dip8 * ratio;
+                stopX -= resolveStrokeModifier(animationState, ratio);
+                break;
+            case X_CHECK:
+                // rotate from X to CHECK angles
+                rotation2 = -X_ROTATION_ANGLE * (1 - ratio);
+                rotation = X_BOT_LINE_ANGLE + (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE - X_BOT_LINE_ANGLE) * ratio;
+
+                // move pivot from X to CHECK
+                pivotX = sidePadding + dip4 + (width / 2 + dip3 - sidePadding - dip4) * ratio;
+                pivotY = height - topPadding - dip3 + (topPadding + height / 2 - height) * ratio;
+
+                // shorten both ends
+                startX += dip8 - (dip4 + dip1) * (1 - ratio);
+                stopX -= resolveStrokeModifier(animationState, 1 - ratio);
+                break;
+        }
+
+        store(offset, rotation, pivotX, pivotY, rotation2, pivotX2, pivotY2, startX, startY, stopX, stopY, 255);
+    }
+
+    private float resolveStrokeModifier(int animationState, float ratio) {
+        switch (stroke) {
+            case STROKE_REGULAR:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip3 - (dip3 * ratio);
+                }
+                return ratio * dip3;
+            case STROKE_THIN:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip3 + diph - (dip3 + diph) * ratio;
+                }
+                return ratio * (dip3 + diph);
+            case STROKE_EXTRA_THIN:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip4 - ((dip3 + dip1) * ratio);
+                }
+                return ratio * dip4;
+        }
+        return 0;
+    }
+
+    private void store(
+        int offset, float rotation, float pivotX, float pivotY, float rotation2, float pivotX2, float pivotY2,
+        float startX, float startY, float stopX, float stopY, float alpha
+    ) {
+        keyframes[offset + ROTATION] = rotation;
+        keyframes[offset + PIVOT_X] = pivotX;
+        keyframes[offset + PIVOT_Y] = pivotY;
+        keyframes[offset + ROTATION_2] = rotation2;
+        keyframes[offset + PIVOT_X_2] = pivotX2;
+        keyframes[offset + PIVOT_Y_2] = pivotY2;
+        keyframes[offset + START_X] = startX;
+        keyframes[offset + START_Y] = startY;
+        keyframes[offset + STOP_X] = stopX;
+        keyframes[offset + STOP_Y] = stopY;
+        keyframes[offset + ALPHA] = alpha;
+    }
+}
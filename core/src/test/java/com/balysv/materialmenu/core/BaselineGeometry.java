@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu.core;
+
+import static com.balysv.materialmenu.core.TransitionTable.ARROW_CHECK;
+import static com.balysv.materialmenu.core.TransitionTable.ARROW_X;
+import static com.balysv.materialmenu.core.TransitionTable.BURGER_ARROW;
+import static com.balysv.materialmenu.core.TransitionTable.BURGER_CHECK;
+import static com.balysv.materialmenu.core.TransitionTable.BURGER_X;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_ALPHA;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_BOTTOM;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_MIDDLE;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_START_X;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_START_Y;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_STOP_X;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_STOP_Y;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_STRIDE;
+import static com.balysv.materialmenu.core.TransitionTable.LINE_TOP;
+import static com.balysv.materialmenu.core.TransitionTable.LINES_SIZE;
+import static com.balysv.materialmenu.core.TransitionTable.STROKE_EXTRA_THIN;
+import static com.balysv.materialmenu.core.TransitionTable.STROKE_REGULAR;
+import static com.balysv.materialmenu.core.TransitionTable.STROKE_THIN;
+import static com.balysv.materialmenu.core.TransitionTable.X_CHECK;
+
+/**
+ * Line geometry of the original canvas based {@code MaterialMenuDrawable}, ported line by line
+ * apart from recording end points through the canvas matrix instead of drawing them. Serves as
+ * the golden reference {@link TransitionTable} has to reproduce.
+ */
+final class BaselineGeometry {
+
+    private static final int BASE_DRAWABLE_WIDTH  = 40;
+    private static final int BASE_DRAWABLE_HEIGHT = 40;
+    private static final int BASE_ICON_WIDTH      = 20;
+
+    private static final float ARROW_MID_LINE_ANGLE = 180;
+    private static final float ARROW_TOP_LINE_ANGLE = 135;
+    private static final float ARROW_BOT_LINE_ANGLE = 225;
+    private static final float X_TOP_LINE_ANGLE     = 44;
+    private static final float X_BOT_LINE_ANGLE     = -44;
+    private static final float X_ROTATION_ANGLE     = 90;
+    private static final float CHECK_MIDDLE_ANGLE   = 135;
+    private static final float CHECK_BOTTOM_ANGLE   = -90;
+
+    final float dip1;
+    final float iconWidth;
+    final int   width;
+    final int   height;
+
+    private final float diph;
+    private final float dip2;
+    private final float dip3;
+    private final float dip4;
+    private final float dip8;
+
+    private final float topPadding;
+    private final float sidePadding;
+    private final int   stroke;
+
+    private int   animationState;
+    private float transformationValue;
+
+    // canvas matrix, row major 2x3
+    private final double[] matrix = new double[6];
+
+    BaselineGeometry(int stroke, float density, int scale) {
+        // convert each separately due to various densities
+        this.dip1 = dpToPx(density, 1) * scale;
+        this.dip2 = dpToPx(density, 2) * scale;
+        this.dip3 = dpToPx(density, 3) * scale;
+        this.dip4 = dpToPx(density, 4) * scale;
+        this.dip8 = dpToPx(density, 8) * scale;
+        this.diph = dip1 / 2;
+
+        this.stroke = stroke;
+        this.width = (int) (dpToPx(density, BASE_DRAWABLE_WIDTH) * scale);
+        this.height = (int) (dpToPx(density, BASE_DRAWABLE_HEIGHT) * scale);
+        this.iconWidth = dpToPx(density, BASE_ICON_WIDTH) * scale;
+
+        this.sidePadding = (width - iconWidth) / 2;
+        this.topPadding = (height - 5 * dip3) / 2;
+    }
+
+    private static float dpToPx(float density, float dp) {
+        return dp * density;
+    }
+
+    /**
+     * @param out receives {@link TransitionTable#LINES_SIZE} values in {@link TransitionTable} line layout
+     */
+    void lines(int animationState, float transformationValue, boolean rtl, float[] out) {
+        this.animationState = animationState;
+        this.transformationValue = transformationValue;
+
+        final float ratio = transformationValue <= 1 ? transformationValue : 2 - transformationValue;
+
+        drawTopLine(ratio, out, LINE_TOP * LINE_STRIDE);
+        drawMiddleLine(ratio, out, LINE_MIDDLE * LINE_STRIDE);
+        drawBottomLine(ratio, out, LINE_BOTTOM * LINE_STRIDE);
+
+        if (rtl) {
+            // canvas.scale(-1, 1, 0, 0) followed by canvas.translate(-width, 0)
+            for (int offset = 0; offset < LINES_SIZE; offset += LINE_STRIDE) {
+                out[offset + LINE_START_X] = width - out[offset + LINE_START_X];
+                out[offset + LINE_STOP_X] = width - out[offset + LINE_STOP_X];
+            }
+        }
+    }
+
+    private void drawMiddleLine(float ratio, float[] out, int offset) {
+        resetMatrix();
+
+        float rotation = 0;
+        float pivotX = width / 2;
+        float pivotY = width / 2;
+        float startX = sidePadding;
+        float startY = topPadding + dip3 / 2 * 5;
+        float stopX = width - sidePadding;
+        float stopY = topPadding + dip3 / 2 * 5;
+        int alpha = 255;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                // rotate by 180
+                if (isMorphingForward()) {
+                    rotation = ratio * ARROW_MID_LINE_ANGLE;
+                } else {
+                    rotation = ARROW_MID_LINE_ANGLE + (1 - ratio) * ARROW_MID_LINE_ANGLE;
+                }
+                // shorten one end
+                stopX -= ratio * resolveStrokeModifier(ratio) / 2;
+                break;
+            case BURGER_X:
+                // fade out
+                alpha = (int) ((1 - ratio) * 255);
+                break;
+            case ARROW_X:
+                // fade out and shorten one end
+                alpha = (int) ((1 - ratio) * 255);
+                startX += (1 - ratio) * dip2;
+                break;
+            case ARROW_CHECK:
+                if (isMorphingForward()) {
+                    // rotate until required angle
+                    rotation = ratio * CHECK_MIDDLE_ANGLE;
+                } else {
+                    // rotate back to starting angle
+                    rotation = CHECK_MIDDLE_ANGLE - CHECK_MIDDLE_ANGLE * (1 - ratio);
+                }
+                // shorten one end and lengthen the other
+                startX += dip3 / 2 + dip4 - (1 - ratio) * dip2;
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+            case BURGER_CHECK:
+                // rotate until required angle
+                rotation = ratio * CHECK_MIDDLE_ANGLE;
+                // lengthen both ends
+                startX += ratio * (dip4 + dip3 / 2);
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+            case X_CHECK:
+                // fade in
+                alpha = (int) (ratio * 255);
+                // rotation to check angle
+                rotation = ratio * CHECK_MIDDLE_ANGLE;
+                // lengthen both ends
+                startX += ratio * (dip4 + dip3 / 2);
+                stopX += ratio * dip1;
+                pivotX = width / 2 + dip3 + diph;
+                break;
+        }
+
+        rotate(rotation, pivotX, pivotY);
+        drawLine(startX, startY, stopX, stopY, alpha, out, offset);
+    }
+
+    private void drawTopLine(float ratio, float[] out, int offset) {
+        resetMatrix();
+
+        float rotation = 0, pivotX = 0, pivotY = 0;
+        float rotation2 = 0;
+        // pivot at center of line
+        float pivotX2 = width / 2 + dip3 / 2;
+        float pivotY2 = topPadding + dip2;
+
+        float startX = sidePadding;
+        float startY = topPadding + dip2;
+        float stopX = width - sidePadding;
+        float stopY = topPadding + dip2;
+        int alpha = 255;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                if (isMorphingForward()) {
+                    // rotate until required angle
+                    rotation = ratio * ARROW_BOT_LINE_ANGLE;
+                } else {
+                    // rotate back to start doing a 360
+                    rotation = ARROW_BOT_LINE_ANGLE + (1 - ratio) * ARROW_TOP_LINE_ANGLE;
+                }
+                // rotate by middle
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorten both ends
+                stopX -= resolveStrokeModifier(ratio);
+                startX += dip3 * ratio;
+
+                break;
+            case BURGER_X:
+                // rotate until required angles
+                rotation = X_TOP_LINE_ANGLE * ratio;
+                rotation2 = X_ROTATION_ANGLE * ratio;
+
+                // pivot at left corner of line
+                pivotX = sidePadding + dip4;
+                pivotY = topPadding + dip3;
+
+                // shorten one end
+                startX += dip3 * ratio;
+                break;
+            case ARROW_X:
+                // rotate from ARROW angle to X angle
+                rotation = ARROW_BOT_LINE_ANGLE + (X_TOP_LINE_ANGLE - ARROW_BOT_LINE_ANGLE) * ratio;
+                rotation2 = X_ROTATION_ANGLE * ratio;
+
+                // move pivot from ARROW pivot to X pivot
+                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
+                pivotY = height / 2 + (topPadding + dip3 - height / 2) * ratio;
+
+                // lengthen both ends
+                stopX -= resolveStrokeModifier(ratio);
+                startX += dip3;
+                break;
+            case ARROW_CHECK:
+                // fade out
+                alpha = (int) ((1 - ratio) * 255);
+                // retain starting arrow configuration
+                rotation = ARROW_BOT_LINE_ANGLE;
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorted both ends
+                stopX -= resolveStrokeModifier(1);
+                startX += dip3;
+                break;
+            case BURGER_CHECK:
+                // fade out
+                alpha = (int) ((1 - ratio) * 255);
+                break;
+            case X_CHECK:
+                // retain X configuration
+                rotation = X_TOP_LINE_ANGLE;
+                rotation2 = X_ROTATION_ANGLE;
+                pivotX = sidePadding + dip4;
+                pivotY = topPadding + dip3;
+                stopX += dip3 - dip3 * (1 - ratio);
+                startX += dip3;
+
+                // fade out
+                alpha = (int) ((1 - ratio) * 255);
+                break;
+        }
+
+        rotate(rotation, pivotX, pivotY);
+        rotate(rotation2, pivotX2, pivotY2);
+        drawLine(startX, startY, stopX, stopY, alpha, out, offset);
+    }
+
+    private void drawBottomLine(float ratio, float[] out, int offset) {
+        resetMatrix();
+
+        float rotation = 0, pivotX = 0, pivotY = 0;
+        float rotation2 = 0;
+        // pivot at center of line
+        float pivotX2 = width / 2 + dip3 / 2;
+        float pivotY2 = height - topPadding - dip2;
+
+        float startX = sidePadding;
+        float startY = height - topPadding - dip2;
+        float stopX = width - sidePadding;
+        float stopY = height - topPadding - dip2;
+
+        switch (animationState) {
+            case BURGER_ARROW:
+                if (isMorphingForward()) {
+                    // rotate to required angle
+                    rotation = ARROW_TOP_LINE_ANGLE * ratio;
+                } else {
+                    // rotate back to start doing a 360
+                    rotation = ARROW_TOP_LINE_ANGLE + (1 - ratio) * ARROW_BOT_LINE_ANGLE;
+                }
+                // pivot center of canvas
+                pivotX = width / 2;
+                pivotY = height / 2;
+
+                // shorten both ends
+                stopX = width - sidePadding - resolveStrokeModifier(ratio);
+                startX = sidePadding + dip3 * ratio;
+                break;
+            case BURGER_X:
+                if (isMorphingForward()) {
+                    // rotate around
+                    rotation2 = -X_ROTATION_ANGLE * ratio;
+                } else {
+                    // rotate directly
+                    rotation2 = X_ROTATION_ANGLE * ratio;
+                }
+                // rotate to required angle
+                rotation = X_BOT_LINE_ANGLE * ratio;
+
+                // pivot left corner of line
+                pivotX = sidePadding + dip4;
+                pivotY = height - topPadding - dip3;
+
+                // shorten one end
+                startX += dip3 * ratio;
+                break;
+            case ARROW_X:
+                // rotate from ARROW angle to X angle
+                rotation = ARROW_TOP_LINE_ANGLE + (360 + X_BOT_LINE_ANGLE - ARROW_TOP_LINE_ANGLE) * ratio;
+                rotation2 = -X_ROTATION_ANGLE * ratio;
+
+                // move pivot from ARROW pivot to X pivot
+                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
+                pivotY = height / 2 + (height / 2 - topPadding - dip3) * ratio;
+
+                // lengthen both ends
+                stopX -= resolveStrokeModifier(ratio);
+                startX += dip3;
+                break;
+            case ARROW_CHECK:
+                // rotate from ARROW angle to CHECK angle
+                rotation = ARROW_TOP_LINE_ANGLE + ratio * CHECK_BOTTOM_ANGLE;
+
+                // move pivot from ARROW pivot to CHECK pivot
+                pivotX = width / 2 + dip3 * ratio;
+                pivotY = height / 2 - dip3 * ratio;
+
+                // length stays same as ARROW
+                stopX -= resolveStrokeModifier(1);
+                startX += dip3 + (dip4 + dip1) * ratio;
+                break;
+            case BURGER_CHECK:
+                // rotate from ARROW angle to CHECK angle
+                rotation = ratio * (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE);
+
+                // move pivot from BURGER pivot to CHECK pivot
+                pivotX = width / 2 + dip3 * ratio;
+                pivotY = height / 2 - dip3 * ratio;
+
+                // length stays same as BURGER
+                startX += dip8 * ratio;
+                stopX -= resolveStrokeModifier(ratio);
+                break;
+            case X_CHECK:
+                // rotate from X to CHECK angles
+                rotation2 = -X_ROTATION_ANGLE * (1 - ratio);
+                rotation = X_BOT_LINE_ANGLE + (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE - X_BOT_LINE_ANGLE) * ratio;
+
+                // move pivot from X to CHECK
+                pivotX = sidePadding + dip4 + (width / 2 + dip3 - sidePadding - dip4) * ratio;
+                pivotY = height - topPadding - dip3 + (topPadding + height / 2 - height) * ratio;
+
+                // shorten both ends
+                startX += dip8 - (dip4 + dip1) * (1 - ratio);
+                stopX -= resolveStrokeModifier(1 - ratio);
+                break;
+        }
+
+        rotate(rotation, pivotX, pivotY);
+        rotate(rotation2, pivotX2, pivotY2);
+        drawLine(startX, startY, stopX, stopY, 255, out, offset);
+    }
+
+    private boolean isMorphingForward() {
+        return transformationValue <= 1;
+    }
+
+    private float resolveStrokeModifier(float ratio) {
+        switch (stroke) {
+            case STROKE_REGULAR:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip3 - (dip3 * ratio);
+                }
+                return ratio * dip3;
+            case STROKE_THIN:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip3 + diph - (dip3 + diph) * ratio;
+                }
+                return ratio * (dip3 + diph);
+            case STROKE_EXTRA_THIN:
+                if (animationState == ARROW_X || animationState == X_CHECK) {
+                    return dip4 - ((dip3 + dip1) * ratio);
+                }
+                return ratio * dip4;
+        }
+        return 0;
+    }
+
+    /*
+     * Canvas stand-in
+     */
+
+    private void resetMatrix() {
+        matrix[0] = 1;
+        matrix[1] = 0;
+        matrix[2] = 0;
+        matrix[3] = 0;
+        matrix[4] = 1;
+        matrix[5] = 0;
+    }
+
+    /**
+     * Pre-concatenates a rotation around given pivot, like {@code Canvas.rotate(degrees, px, py)}
+     */
+    private void rotate(float degrees, float pivotX, float pivotY) {
+        final double radians = Math.toRadians(degrees);
+        final double cos = Math.cos(radians);
+        final double sin = Math.sin(radians);
+        final double tx = pivotX - cos * pivotX + sin * pivotY;
+        final double ty = pivotY - sin * pivotX - cos * pivotY;
+
+        final double a = matrix[0], b = matrix[1], c = matrix[2];
+        final double d = matrix[3], e = matrix[4], f = matrix[5];
+        matrix[0] = a * cos + b * sin;
+        matrix[1] = -a * sin + b * cos;
+        matrix[2] = a * tx + b * ty + c;
+        matrix[3] = d * cos + e * sin;
+        matrix[4] = -d * sin + e * cos;
+        matrix[5] = d * tx + e * ty + f;
+    }
+
+    private void drawLine(float startX, float startY, float stopX, float stopY, int alpha, float[] out, int offset) {
+        out[offset + LINE_START_X] = (float) (matrix[0] * startX + matrix[1] * startY + matrix[2]);
+        out[offset + LINE_START_Y] = (float) (matrix[3] * startX + matrix[4] * startY + matrix[5]);
+        out[offset + LINE_STOP_X] = (float) (matrix[0] * stopX + matrix[1] * stopY + matrix[2]);
+        out[offset + LINE_STOP_Y] = (float) (matrix[3] * stopX + matrix[4] * stopY + matrix[5]);
+        out[offset + LINE_ALPHA] = alpha;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransitionTableTest {
+
+    private static final float[] DENSITIES = { 0.75f, 1, 1.5f, 2, 2.625f, 3, 3.5f, 4 };
+    private static final int[]   SCALES    = { 1, 2 };
+    private static final int[]   STROKES   = {
+        TransitionTable.STROKE_REGULAR, TransitionTable.STROKE_THIN, TransitionTable.STROKE_EXTRA_THIN
+    };
+
+    // offsets sampled over the whole 0 to 2 range, both rest states and the turning point included
+    private static final int OFFSET_STEPS = 64;
+
+    private static final float POSITION_TOLERANCE = 0.01f;
+    private static final float ALPHA_TOLERANCE    = 1;
+
+    @Test public void endPointsMatchBaselineGeometry() {
+        final float[] frame = new float[TransitionTable.FRAME_SIZE];
+        final float[] actual = new float[TransitionTable.LINES_SIZE];
+        final float[] expected = new float[TransitionTable.LINES_SIZE];
+
+        for (float density : DENSITIES) {
+            for (int scale : SCALES) {
+                for (int stroke : STROKES) {
+                    final BaselineGeometry baseline = new BaselineGeometry(stroke, density, scale);
+                    final TransitionTable table = new TransitionTable(
+                        stroke, baseline.width, baseline.height, baseline.iconWidth, baseline.dip1
+                    );
+
+                    for (int state = 0; state < TransitionTable.TRANSITION_COUNT; state++) {
+                        for (int step = 0; step <= OFFSET_STEPS; step++) {
+                            final float value = 2f * step / OFFSET_STEPS;
+                            for (boolean rtl : new boolean[] { false, true }) {
+                                baseline.lines(state, value, rtl, expected);
+                                table.sampleLines(state, value, rtl, frame, actual);
+                                assertLines(
+                                    String.format(
+                                        "transition %d at %s, stroke %d, density %s, scale %d, rtl %s",
+                                        state, value, stroke, density, scale, rtl
+                                    ),
+                                    expected, actual
+                                );
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test public void burgerArrowMiddleLineShortensQuadratically() {
+        final BaselineGeometry baseline = new BaselineGeometry(TransitionTable.STROKE_EXTRA_THIN, 3, 1);
+        final TransitionTable table = new TransitionTable(
+            TransitionTable.STROKE_EXTRA_THIN, baseline.width, baseline.height, baseline.iconWidth, baseline.dip1
+        );
+        final float[] frame = new float[TransitionTable.FRAME_SIZE];
+
+        // shortened by ratio * ratio * 4 dip / 2, a straight line between the ends would be off by 1.5 px
+        table.sample(TransitionTable.BURGER_ARROW, true, 0.5f, frame);
+        final int middle = TransitionTable.LINE_MIDDLE * TransitionTable.PARAM_COUNT;
+        assertEquals(
+            baseline.width - (baseline.width - baseline.iconWidth) / 2 - 0.25f * 4 * baseline.dip1 / 2,
+            frame[middle + TransitionTable.STOP_X], POSITION_TOLERANCE
+        );
+    }
+
+    private static void assertLines(String message, float[] expected, float[] actual) {
+        for (int line = 0; line < TransitionTable.LINE_COUNT; line++) {
+            final int offset = line * TransitionTable.LINE_STRIDE;
+            final String lineMessage = message + ", line " + line;
+            assertEquals(
+                lineMessage + ", alpha",
+                expected[offset + TransitionTable.LINE_ALPHA], (int) actual[offset + TransitionTable.LINE_ALPHA],
+                ALPHA_TOLERANCE
+            );
+            // invisible lines have no position to compare
+            if (expected[offset + TransitionTable.LINE_ALPHA] == 0) continue;
+
+            for (int point = TransitionTable.LINE_START_X; point <= TransitionTable.LINE_STOP_Y; point++) {
+                assertEquals(lineMessage + ", coordinate " + point, expected[offset + point], actual[offset + point], POSITION_TOLERANCE);
+            }
+        }
+    }
+}
@@ -64,7 +64,7 @@ public class DemoActivity extends AppCompatActivity implements View.OnClickListe
 
             @Override
             public void onDrawerSlide(View drawerView, float slideOffset) {
-                getMaterialMenu(toolbar).setTransformationOffset(
+                getMaterialMenu(toolbar).trackTransformationOffset(
                     MaterialMenuDrawable.AnimationState.BURGER_ARROW,
                     direction ? 2 - slideOffset : slideOffset
                 );
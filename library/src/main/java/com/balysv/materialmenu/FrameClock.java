@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Runs callbacks on the main thread once per display frame. Callbacks may be posted
+ * from any thread and a callback posted several times before the next frame runs once.
+ * <p/>
+ * Frames are driven by {@link Choreographer} on API 16 and above and approximated with
+ * a {@link Handler} on older platforms.
+ */
+final class FrameClock {
+
+    interface Callback {
+        /**
+         * @param frameTimeNanos time at which the frame started rendering, in {@link System#nanoTime()} base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private static FrameClock instance;
+
+    private final Handler  handler = new Handler(Looper.getMainLooper());
+    private final Runnable scheduler;
+    private final Object   lock    = new Object();
+
+    private ArrayList<Callback> pending = new ArrayList<>();
+    private ArrayList<Callback> running = new ArrayList<>();
+    private boolean             scheduled;
+
+    private FrameClock() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            scheduler = new ChoreographerScheduler(this);
+        } else {
+            scheduler = new Runnable() {
+                private final Runnable frame = new Runnable() {
+                    @Override public void run() {
+                        doFrame(System.nanoTime());
+                    }
+                };
+
+                @Override public void run() {
+                    handler.postDelayed(frame, FALLBACK_FRAME_DELAY);
+                }
+            };
+        }
+    }
+
+    static synchronized FrameClock getInstance() {
+        if (instance == null) {
+            instance = new FrameClock();
+        }
+        return instance;
+    }
+
+    static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * Run callback once on the next frame. Does nothing if it is already waiting for it.
+     */
+    void postFrameCallback(Callback callback) {
+        synchronized (lock) {
+            if (!pending.contains(callback)) {
+                pending.add(callback);
+            }
+            if (scheduled) return;
+            scheduled = true;
+        }
+
+        if (isMainThread()) {
+            scheduler.run();
+        } else {
+            handler.post(scheduler);
+        }
+    }
+
+    void removeFrameCallback(Callback callback) {
+        synchronized (lock) {
+            pending.remove(callback);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        final ArrayList<Callback> callbacks;
+        synchronized (lock) {
+            callbacks = pending;
+            pending = running;
+            running = callbacks;
+            scheduled = false;
+        }
+
+        for (int i = 0, size = callbacks.size(); i < size; i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerScheduler implements Runnable, Choreographer.FrameCallback {
+        private final FrameClock clock;
+
+        private ChoreographerScheduler(FrameClock clock) {
+            this.clock = clock;
+        }
+
+        @Override public void run() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override public void doFrame(long frameTimeNanos) {
+            clock.doFrame(frameTimeNanos);
+        }
+    }
+}
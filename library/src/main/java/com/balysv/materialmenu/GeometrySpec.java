@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.content.res.Resources;
+
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.Stroke;
+import static com.balysv.materialmenu.MaterialMenuDrawable.dpToPx;
+
+/**
+ * Immutable dimensions and transition geometry of {@link MaterialMenuDrawable}.
+ * One instance exists per density, scale and {@link Stroke} combination and is
+ * shared by every drawable created with them.
+ */
+final class GeometrySpec {
+
+    private static final int BASE_DRAWABLE_WIDTH  = 40;
+    private static final int BASE_DRAWABLE_HEIGHT = 40;
+    private static final int BASE_ICON_WIDTH      = 20;
+
+    private static final Map<Long, GeometrySpec> CACHE = new HashMap<>();
+
+    final int   width;
+    final int   height;
+    final float strokeWidth;
+    final float dip1;
+
+    final TransitionTable transitionTable;
+
+    private GeometrySpec(Resources resources, int scale, Stroke stroke) {
+        // convert each separately due to various densities
+        this.dip1 = dpToPx(resources, 1) * scale;
+        this.width = (int) (dpToPx(resources, BASE_DRAWABLE_WIDTH) * scale);
+        this.height = (int) (dpToPx(resources, BASE_DRAWABLE_HEIGHT) * scale);
+        this.strokeWidth = dpToPx(resources, stroke.strokeWidth) * scale;
+        final float iconWidth = dpToPx(resources, BASE_ICON_WIDTH) * scale;
+        this.transitionTable = new TransitionTable(stroke.ordinal(), width, height, iconWidth, dip1);
+    }
+
+    static GeometrySpec obtain(Resources resources, int scale, Stroke stroke) {
+        // density bits in the upper half, scale and stroke packed into the lower half
+        final long key = (long) Float.floatToIntBits(resources.getDisplayMetrics().density) << 32
+            | (scale & 0x3fffffffL) << 2
+            | stroke.ordinal();
+
+        synchronized (CACHE) {
+            GeometrySpec spec = CACHE.get(key);
+            if (spec == null) {
+                spec = new GeometrySpec(resources, scale, stroke);
+                CACHE.put(key, spec);
+            }
+            return spec;
+        }
+    }
+}
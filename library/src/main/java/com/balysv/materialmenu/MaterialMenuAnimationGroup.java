@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import java.util.ArrayList;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.AnimationState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.DEFAULT_TRANSFORM_DURATION;
+import static com.balysv.materialmenu.MaterialMenuDrawable.IconState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_END;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_MID;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_START;
+
+/**
+ * Animates any number of {@link MaterialMenu}s on the {@link MaterialMenuScheduler} frame,
+ * so icons started together move in lockstep and all of them update within the same frame.
+ * <p/>
+ * Icons driven by a group should not be animated with {@link MaterialMenu#animateIconState}
+ * at the same time. Must be used from the main thread.
+ */
+public class MaterialMenuAnimationGroup {
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    private final MaterialMenuScheduler.Stepper stepper = new MaterialMenuScheduler.Stepper() {
+        @Override public boolean onFrame(long frameTimeNanos, boolean overBudget) {
+            return MaterialMenuAnimationGroup.this.onFrame(frameTimeNanos);
+        }
+    };
+
+    private long         duration;
+    private Interpolator interpolator = new DecelerateInterpolator(3);
+
+    public MaterialMenuAnimationGroup() {
+        this(DEFAULT_TRANSFORM_DURATION);
+    }
+
+    public MaterialMenuAnimationGroup(int duration) {
+        this.duration = duration;
+    }
+
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @param interpolator interpolator of every transformation, null for linear
+     */
+    public void setInterpolator(Interpolator interpolator) {
+        this.interpolator = interpolator;
+    }
+
+    /**
+     * Animate icon to given state on the shared clock. Icons added before the next frame
+     * start together. An icon already animating in this group is reversed from where it is,
+     * or continues to the new state once its running transformation ends.
+     *
+     * @param menu      icon to animate
+     * @param iconState new icon state
+     * @throws IllegalArgumentException when the icon is not in a built-in icon state, i.e. a
+     *                                  {@link MaterialMenuGraphDrawable} in a state of its own
+     */
+    public void animateIconState(MaterialMenu menu, IconState iconState) {
+        final Entry entry = findEntry(menu);
+        if (entry == null) {
+            final IconState current = menu.getIconState();
+            if (current == null) {
+                throw new IllegalArgumentException("Only icons in a built-in icon state can join a group");
+            }
+            if (current == iconState) return;
+
+            final Entry added = new Entry(menu);
+            begin(added, current, iconState);
+            entries.add(added);
+            MaterialMenuScheduler.schedule(stepper);
+            return;
+        }
+
+        final AnimationState animationState = entry.animationState;
+        if (iconState == entry.target) {
+            entry.next = null;
+        } else if (iconState == animationState.getFirstState() || iconState == animationState.getSecondState()) {
+            entry.from = entry.value;
+            entry.to = iconState == animationState.getSecondState()
+                ? TRANSFORMATION_MID
+                : entry.value <= TRANSFORMATION_MID ? TRANSFORMATION_START : TRANSFORMATION_END;
+            entry.target = iconState;
+            entry.next = null;
+            entry.startTime = -1;
+        } else {
+            entry.next = iconState;
+        }
+    }
+
+    public boolean isRunning() {
+        return !entries.isEmpty();
+    }
+
+    /**
+     * Stop all icons where they are
+     */
+    public void cancel() {
+        // the scheduler drops the group on its next frame
+        entries.clear();
+    }
+
+    /**
+     * Stop all icons, settling each at the state it was animating to
+     */
+    public void end() {
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            final Entry entry = entries.get(i);
+            entry.menu.setIconState(entry.next != null ? entry.next : entry.target);
+        }
+        cancel();
+    }
+
+    private boolean onFrame(long frameTimeNanos) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final Entry entry = entries.get(i);
+            if (entry.startTime < 0) {
+                entry.startTime = frameTimeNanos;
+            }
+
+            // every icon is sampled at the same frame time
+            final float length = duration * 1000000f * Math.abs(entry.to - entry.from);
+            final float fraction = length > 0 ? Math.min(1, (frameTimeNanos - entry.startTime) / length) : 1;
+            final float eased = interpolator != null ? interpolator.getInterpolation(fraction) : fraction;
+            final float value = entry.from + (entry.to - entry.from) * eased;
+            entry.value = Math.max(TRANSFORMATION_START, Math.min(TRANSFORMATION_END, value));
+
+            if (fraction < 1) {
+                entry.menu.setTransformationOffset(entry.animationState, entry.value);
+            } else if (entry.next != null) {
+                entry.menu.setIconState(entry.target);
+                begin(entry, entry.target, entry.next);
+            } else {
+                entry.menu.setIconState(entry.target);
+                entries.remove(i);
+            }
+        }
+
+        return !entries.isEmpty();
+    }
+
+    private static void begin(Entry entry, IconState current, IconState target) {
+        final AnimationState animationState = MaterialMenuDrawable.resolveTransformation(current, target);
+        final boolean direction = current == animationState.getFirstState();
+
+        entry.animationState = animationState;
+        entry.from = direction ? TRANSFORMATION_START : TRANSFORMATION_MID;
+        entry.to = direction ? TRANSFORMATION_MID : TRANSFORMATION_END;
+        entry.value = entry.from;
+        entry.target = target;
+        entry.next = null;
+        entry.startTime = -1;
+    }
+
+    private Entry findEntry(MaterialMenu menu) {
+        for (int i = 0, size = entries.size(); i < size; i++) {
+            if (entries.get(i).menu == menu) return entries.get(i);
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        private final MaterialMenu menu;
+
+        private AnimationState animationState;
+        private float          from;
+        private float          to;
+        private float          value;
+        private IconState      target;
+        private IconState      next;
+        private long           startTime;
+
+        private Entry(MaterialMenu menu) {
+            this.menu = menu;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.util.Arrays;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.AnimationState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.DEFAULT_SCALE;
+import static com.balysv.materialmenu.MaterialMenuDrawable.IconState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.Stroke;
+
+/**
+ * Draws many icons of the same color, stroke and scale into a single {@link Canvas}
+ * with one shared {@link Paint}, without a {@link MaterialMenuDrawable} or
+ * {@link MaterialMenuView} per icon. Useful for host views or item decorations
+ * rendering an icon per list row.
+ * <p/>
+ * Icons are queued with {@code add} methods and emitted by {@link #draw(Canvas)}. All
+ * fully opaque lines are drawn with a single {@code drawLines} call, lines fading in
+ * or out during a transition are drawn separately.
+ */
+public class MaterialMenuBatchRenderer {
+
+    private static final int POINTS_PER_LINE = 4;
+
+    private final GeometrySpec spec;
+    private final Paint        paint = new Paint();
+
+    private final float[] frame = new float[TransitionTable.FRAME_SIZE];
+    private final float[] lines = new float[TransitionTable.LINES_SIZE];
+
+    private float[] opaqueLines = new float[TransitionTable.LINE_COUNT * POINTS_PER_LINE * 16];
+    private float[] fadingLines = new float[TransitionTable.LINES_SIZE * 4];
+    private int     opaqueSize;
+    private int     fadingSize;
+
+    private boolean rtlEnabled;
+
+    public MaterialMenuBatchRenderer(Context context, int color, Stroke stroke) {
+        this(context, color, stroke, DEFAULT_SCALE);
+    }
+
+    public MaterialMenuBatchRenderer(Context context, int color, Stroke stroke, int scale) {
+        this.spec = GeometrySpec.obtain(context.getResources(), scale, stroke);
+
+        MaterialMenuDrawable.initIconPaint(paint, spec, color);
+    }
+
+    /**
+     * Queue an icon at rest
+     *
+     * @param state icon state to draw
+     * @param x     left position of the icon
+     * @param y     top position of the icon
+     */
+    public void add(IconState state, float x, float y) {
+        add(
+            MaterialMenuDrawable.restAnimationState(state),
+            MaterialMenuDrawable.restTransformationValue(state),
+            x, y
+        );
+    }
+
+    /**
+     * Queue an icon in the middle of a transformation
+     *
+     * @param animationState state to draw
+     * @param value          between 0 and 2, as in {@link MaterialMenu#setTransformationOffset}
+     * @param x              left position of the icon
+     * @param y              top position of the icon
+     */
+    public void add(AnimationState animationState, float value, float x, float y) {
+        if (value < 0 || value > 2) {
+            throw new IllegalArgumentException("Value must be between 0 and 2");
+        }
+
+        spec.transitionTable.sampleLines(animationState.ordinal(), value, rtlEnabled, frame, lines);
+
+        for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+            final float alpha = lines[offset + TransitionTable.LINE_ALPHA];
+            if (alpha >= 255) {
+                opaqueLines = ensureCapacity(opaqueLines, opaqueSize + POINTS_PER_LINE);
+                opaqueSize = appendLine(opaqueLines, opaqueSize, offset, x, y);
+            } else if (alpha >= 1) {
+                fadingLines = ensureCapacity(fadingLines, fadingSize + TransitionTable.LINE_STRIDE);
+                fadingSize = appendLine(fadingLines, fadingSize, offset, x, y);
+                fadingLines[fadingSize++] = alpha;
+            }
+        }
+    }
+
+    /**
+     * Remove all queued icons. Allocated buffers are kept for reuse.
+     */
+    public void clear() {
+        opaqueSize = 0;
+        fadingSize = 0;
+    }
+
+    /**
+     * Draw all queued icons
+     *
+     * @param canvas canvas to draw into
+     */
+    public void draw(Canvas canvas) {
+        final int alpha = paint.getAlpha();
+        for (int offset = 0; offset < fadingSize; offset += TransitionTable.LINE_STRIDE) {
+            paint.setAlpha((int) fadingLines[offset + TransitionTable.LINE_ALPHA] * alpha / 255);
+            canvas.drawLine(
+                fadingLines[offset + TransitionTable.LINE_START_X],
+                fadingLines[offset + TransitionTable.LINE_START_Y],
+                fadingLines[offset + TransitionTable.LINE_STOP_X],
+                fadingLines[offset + TransitionTable.LINE_STOP_Y],
+                paint
+            );
+        }
+        paint.setAlpha(alpha);
+
+        if (opaqueSize > 0) {
+            canvas.drawLines(opaqueLines, 0, opaqueSize, paint);
+        }
+    }
+
+    public void setColor(int color) {
+        paint.setColor(color);
+    }
+
+    /**
+     * Flip icons queued after this call horizontally
+     *
+     * @param rtlEnabled true to enable RTL layout
+     */
+    public void setRTLEnabled(boolean rtlEnabled) {
+        this.rtlEnabled = rtlEnabled;
+    }
+
+    public int getIconWidth() {
+        return spec.width;
+    }
+
+    public int getIconHeight() {
+        return spec.height;
+    }
+
+    private int appendLine(float[] target, int size, int offset, float x, float y) {
+        target[size++] = lines[offset + TransitionTable.LINE_START_X] + x;
+        target[size++] = lines[offset + TransitionTable.LINE_START_Y] + y;
+        target[size++] = lines[offset + TransitionTable.LINE_STOP_X] + x;
+        target[size++] = lines[offset + TransitionTable.LINE_STOP_Y] + y;
+        return size;
+    }
+
+    private static float[] ensureCapacity(float[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide, memory bounded cache of icons rendered into bitmaps, such as rest states
+ * and sprite atlases, shared by every {@link MaterialMenuDrawable}. The least recently used
+ * bitmaps are evicted once the byte budget is exceeded, and the cache shrinks when the
+ * system asks the application to trim memory.
+ */
+public final class MaterialMenuBitmapCache {
+
+    public static final int DEFAULT_MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Frame of cache keys holding a whole icon state rather than a single frame
+     */
+    static final int NO_FRAME = -1;
+
+    private static final Map<Key, Bitmap> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static int     maxSize = DEFAULT_MAX_SIZE_BYTES;
+    private static int     size;
+    private static long    hitCount;
+    private static long    missCount;
+    private static long    evictionCount;
+    private static boolean registered;
+
+    private MaterialMenuBitmapCache() {
+    }
+
+    /**
+     * Set the byte budget shared by all cached bitmaps, evicting bitmaps over it right away
+     *
+     * @param maxSize budget in bytes, 0 disables caching
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must not be negative");
+        }
+        MaterialMenuBitmapCache.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public static synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return bytes taken by cached bitmaps
+     */
+    public static synchronized int getSize() {
+        return size;
+    }
+
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public static synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Evict all cached bitmaps
+     */
+    public static synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Shrink the cache as appropriate for a {@link ComponentCallbacks2} trim memory level.
+     * Called automatically once any drawable has been created.
+     */
+    public static synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            // cached icons are rebuilt cheaply on the next draw, do not keep them in background
+            trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(size / 2);
+        }
+    }
+
+    static void register(Context context) {
+        synchronized (MaterialMenuBitmapCache.class) {
+            if (registered) return;
+            registered = true;
+        }
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override public void onLowMemory() {
+                clear();
+            }
+
+            @Override public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    }
+
+    /**
+     * @param state {@link MaterialMenuDrawable.IconState} or {@link MaterialMenuDrawable.AnimationState} rendered
+     * @param frame quantized offset of the rendered frame, frame count of a sprite atlas, or {@link #NO_FRAME}
+     * @param color color the bitmap is rendered in at full alpha, alpha is applied when it is drawn
+     */
+    static synchronized Bitmap get(GeometrySpec spec, Enum<?> state, int frame, int color, boolean rtl) {
+        final Bitmap bitmap = ENTRIES.get(new Key(spec, state, frame, color, rtl));
+        if (bitmap != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return bitmap;
+    }
+
+    static synchronized void put(GeometrySpec spec, Enum<?> state, int frame, int color, boolean rtl, Bitmap bitmap) {
+        final int bytes = bitmap.getByteCount();
+        if (bytes > maxSize) return;
+
+        final Bitmap previous = ENTRIES.put(new Key(spec, state, frame, color, rtl), bitmap);
+        size += bytes;
+        if (previous != null) {
+            size -= previous.getByteCount();
+        }
+        trimToSize(maxSize);
+    }
+
+    private static void trimToSize(int maxSize) {
+        // iteration order of an access ordered map starts with the least recently used entry
+        final Iterator<Bitmap> iterator = ENTRIES.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            // evicted bitmaps are not recycled, drawables may still be drawing them
+            size -= iterator.next().getByteCount();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    private static final class Key {
+        private final GeometrySpec spec;
+        private final Enum<?>      state;
+        private final int          frame;
+        private final int          color;
+        private final boolean      rtl;
+
+        private Key(GeometrySpec spec, Enum<?> state, int frame, int color, boolean rtl) {
+            this.spec = spec;
+            this.state = state;
+            this.frame = frame;
+            this.color = color;
+            this.rtl = rtl;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return spec == key.spec && state == key.state && frame == key.frame && color == key.color && rtl == key.rtl;
+        }
+
+        @Override public int hashCode() {
+            int result = spec.hashCode();
+            result = 31 * result + state.hashCode();
+            result = 31 * result + frame;
+            result = 31 * result + color;
+            result = 31 * result + (rtl ? 1 : 0);
+            return result;
+        }
+    }
+}
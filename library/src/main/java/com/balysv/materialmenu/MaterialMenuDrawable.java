@@ -17,24 +17,29 @@
 package com.balysv.materialmenu;
 
 
-import android.animation.Animator;
 import android.animation.Animator.AnimatorListener;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
-import android.util.Property;
+import android.os.SystemClock;
 import android.util.TypedValue;
-import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static android.graphics.Paint.Style;
 
 public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Animatable {
@@ -43,6 +48,7 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
         BURGER, ARROW, X, CHECK
     }
 
+    // ordinals identify transitions in TransitionTable, keep the order in sync
     public enum AnimationState {
         BURGER_ARROW, BURGER_X, ARROW_X, ARROW_CHECK, BURGER_CHECK, X_CHECK;
 
@@ -85,6 +91,7 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
         }
     }
 
+    // ordinals identify strokes in TransitionTable, keep the order in sync
     public enum Stroke {
         /**
          * 3 dip
@@ -99,7 +106,7 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
          */
         EXTRA_THIN(1);
 
-        private final int strokeWidth;
+        final int strokeWidth;
 
         Stroke(int strokeWidth) {
             this.strokeWidth = strokeWidth;
@@ -119,65 +126,169 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
         }
     }
 
+    public enum RenderMode {
+        /**
+         * Lines are drawn with a single {@code drawLines} call
+         */
+        LINES,
+        /**
+         * Lines are drawn as a single reusable {@link Path}, rebuilt only when icon geometry changes
+         */
+        PATH,
+        /**
+         * Frames of each transformation are pre-rendered off the main thread into a shared sprite
+         * atlas, and the frame nearest to the current offset is drawn as a bitmap. Atlases of
+         * transformations out of the current icon state are prepared ahead. Trades memory for no
+         * stroke rasterization while animating. Falls back to lines until an atlas is ready, when
+         * the icon is too large for an atlas to fit the bitmap cache, or when a color filter is set.
+         */
+        SPRITES
+    }
+
     public static final int     DEFAULT_COLOR              = Color.WHITE;
     public static final int     DEFAULT_SCALE              = 1;
     public static final int     DEFAULT_TRANSFORM_DURATION = 800;
     public static final boolean DEFAULT_VISIBLE            = true;
 
-    private static final int BASE_DRAWABLE_WIDTH  = 40;
-    private static final int BASE_DRAWABLE_HEIGHT = 40;
-    private static final int BASE_ICON_WIDTH      = 20;
-    private static final int BASE_CIRCLE_RADIUS   = 18;
-
-    private static final float ARROW_MID_LINE_ANGLE = 180;
-    private static final float ARROW_TOP_LINE_ANGLE = 135;
-    private static final float ARROW_BOT_LINE_ANGLE = 225;
-    private static final float X_TOP_LINE_ANGLE     = 44;
-    private static final float X_BOT_LINE_ANGLE     = -44;
-    private static final float X_ROTATION_ANGLE     = 90;
-    private static final float CHECK_MIDDLE_ANGLE   = 135;
-    private static final float CHECK_BOTTOM_ANGLE   = -90;
-
-    private static final float TRANSFORMATION_START = 0;
-    private static final float TRANSFORMATION_MID   = 1.0f;
-    private static final float TRANSFORMATION_END   = 2.0f;
+    static final float TRANSFORMATION_START = 0;
+    static final float TRANSFORMATION_MID   = 1.0f;
+    static final float TRANSFORMATION_END   = 2.0f;
 
     private static final int DEFAULT_CIRCLE_ALPHA = 200;
 
-    private final float diph;
-    private final float dip1;
-    private final float dip2;
-    private final float dip3;
-    private final float dip4;
-    private final float dip8;
+    private static final AnimationState[] ANIMATION_STATES = AnimationState.values();
 
-    private final int   width;
-    private final int   height;
-    private final float strokeWidth;
-    private final float iconWidth;
-    private final float topPadding;
-    private final float sidePadding;
-    private final float circleRadius;
+    // transformation between two icon states, indexed by current * ICON_STATE_COUNT + animating
+    private static final int              ICON_STATE_COUNT = IconState.values().length;
+    private static final AnimationState[] TRANSFORMATIONS  = new AnimationState[ICON_STATE_COUNT * ICON_STATE_COUNT];
 
-    private final Stroke stroke;
+    static {
+        for (AnimationState animationState : ANIMATION_STATES) {
+            final int first = animationState.getFirstState().ordinal();
+            final int second = animationState.getSecondState().ordinal();
+            TRANSFORMATIONS[first * ICON_STATE_COUNT + second] = animationState;
+            TRANSFORMATIONS[second * ICON_STATE_COUNT + first] = animationState;
+        }
+    }
 
-    private final Object lock = new Object();
+    private final GeometrySpec spec;
 
     private final Paint iconPaint   = new Paint();
     private final Paint circlePaint = new Paint();
+    // carries the alpha of the icon onto bitmaps cached at opaque alpha
+    private final Paint bitmapPaint = new Paint();
+
+    private final float[] frame = new float[TransitionTable.FRAME_SIZE];
+    private final float[] lines = new float[TransitionTable.LINES_SIZE];
+    private final float[] batch = new float[TransitionTable.LINE_COUNT * 4];
+    private final Path    path  = new Path();
+    // lines the path was built from, fading ones are drawn from here while the path is reused
+    private final float[] pathLines = new float[TransitionTable.LINES_SIZE];
+
+    // icon, animation and transformation state packed by PackedState, so it is never read torn
+    private final AtomicLong state = new AtomicLong(
+        PackedState.pack(IconState.BURGER, null, AnimationState.BURGER_ARROW, false, TRANSFORMATION_START)
+    );
+
+    private final Runnable invalidator = new Runnable() {
+        @Override public void run() {
+            invalidateGeometry();
+        }
+    };
+
+    // lines last published to the host and the region they cover, touched on the main thread only
+    private final float[] dirtyFrame     = new float[TransitionTable.FRAME_SIZE];
+    private final float[] dirtyLines     = new float[TransitionTable.LINES_SIZE];
+    private final float[] publishedLines = new float[TransitionTable.LINES_SIZE];
+    private final Rect    publishedRect  = new Rect();
+    private final Rect    dirtyRect      = new Rect();
+    private final Rect    boundsDirtyRect = new Rect();
+
+    // latest icon state requested from any thread, applied on the next frame
+    private final AtomicReference<IconState> requestedIconState = new AtomicReference<>();
+
+    private final FrameClock.Callback requestDispatcher = new FrameClock.Callback() {
+        @Override public void doFrame(long frameTimeNanos) {
+            final IconState requested = requestedIconState.getAndSet(null);
+            if (requested != null && requested != resolveTargetIconState(state.get())) {
+                animateToIconState(requested);
+            }
+        }
+    };
+
+    // latest tracked animation state ordinal + 1 and offset bits, 0 when nothing is pending
+    private final AtomicLong trackedOffset = new AtomicLong();
+
+    private final FrameClock.Callback trackingDispatcher = new FrameClock.Callback() {
+        @Override public void doFrame(long frameTimeNanos) {
+            applyTrackedOffset();
+        }
+    };
+
+    // stops the driver of a transformation that was stopped off the main thread
+    private final FrameClock.Callback transformationDispatcher = new FrameClock.Callback() {
+        @Override public void doFrame(long frameTimeNanos) {
+            if (!PackedState.isRunning(state.get())) {
+                transformation.cancel();
+            }
+        }
+    };
+
+    private final TransformationDriver.Target transformationTarget = new TransformationDriver.Target() {
+        @Override public void onTransformationUpdate(float value) {
+            // a spring overshooting its target is held within the transformation range
+            updateTransformationValue(Math.max(TRANSFORMATION_START, Math.min(TRANSFORMATION_END, value)), true);
+        }
+
+        @Override public void onTransformationEnd() {
+            finishTransformation();
+        }
+
+        @Override public void onFrameBudgetExceeded() {
+            if (budgetFallback != null && renderMode != budgetFallback) {
+                setRenderMode(budgetFallback);
+            }
+        }
+    };
 
-    private float   transformationValue   = 0f;
-    private boolean transformationRunning = false;
+    private boolean visible;
+    private boolean rtlEnabled;
+
+    private RenderMode     renderMode = RenderMode.LINES;
+    private AnimationState pathState;
+    private float          pathValue;
+    private boolean        pathRtl;
+
+    private SpriteAtlas    spriteAtlas;
+    private AnimationState spriteState;
+    // transformations whose atlas is being rendered, one bit per animation state ordinal
+    private int            spriteRequests;
+    private final Rect     spriteSource = new Rect();
+    private final Rect     spriteTarget = new Rect();
+
+    private final SpriteAtlas.Callback spriteCallback = new SpriteAtlas.Callback() {
+        @Override public void onSpriteAtlasReady(AnimationState animationState, SpriteAtlas atlas) {
+            spriteRequests &= ~(1 << animationState.ordinal());
+            // rendered for a color or layout direction changed since
+            if (!atlas.matches(opaqueIconColor(), rtlEnabled)) return;
+
+            if (animationState == spriteState && spriteAtlas == null) {
+                spriteAtlas = atlas;
+                invalidateContent();
+            }
+        }
+    };
 
-    private IconState      currentIconState = IconState.BURGER;
-    private AnimationState animationState   = AnimationState.BURGER_ARROW;
+    private boolean     restStateCacheEnabled;
+    private Bitmap      restStateBitmap;
+    private IconState   restStateIcon;
+    private ColorFilter colorFilter;
 
-    private IconState animatingIconState;
-    private boolean   visible;
-    private boolean   rtlEnabled;
+    private final TransformationDriver transformation;
 
-    private ObjectAnimator   transformation;
-    private AnimatorListener animatorListener;
+    private volatile int transformationSteps;
+
+    private RenderMode budgetFallback;
 
     private MaterialMenuState materialMenuState;
 
@@ -190,69 +301,42 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
     }
 
     public MaterialMenuDrawable(Context context, int color, Stroke stroke, int scale, int transformDuration) {
-        Resources resources = context.getResources();
-        // convert each separately due to various densities
-        this.dip1 = dpToPx(resources, 1) * scale;
-        this.dip2 = dpToPx(resources, 2) * scale;
-        this.dip3 = dpToPx(resources, 3) * scale;
-        this.dip4 = dpToPx(resources, 4) * scale;
-        this.dip8 = dpToPx(resources, 8) * scale;
-        this.diph = dip1 / 2;
-
-        this.stroke = stroke;
+        this(color, transformDuration, GeometrySpec.obtain(context.getResources(), scale, stroke));
         this.visible = DEFAULT_VISIBLE;
-        this.width = (int) (dpToPx(resources, BASE_DRAWABLE_WIDTH) * scale);
-        this.height = (int) (dpToPx(resources, BASE_DRAWABLE_HEIGHT) * scale);
-        this.iconWidth = dpToPx(resources, BASE_ICON_WIDTH) * scale;
-        this.circleRadius = dpToPx(resources, BASE_CIRCLE_RADIUS) * scale;
-        this.strokeWidth = dpToPx(resources, stroke.strokeWidth) * scale;
-
-        this.sidePadding = (width - iconWidth) / 2;
-        this.topPadding = (height - 5 * dip3) / 2;
-
-        initPaint(color);
-        initAnimations(transformDuration);
-
-        materialMenuState = new MaterialMenuState();
+        MaterialMenuBitmapCache.register(context);
     }
 
-    private MaterialMenuDrawable(
-        int color, Stroke stroke, long transformDuration, int width, int height,
-        float iconWidth, float circleRadius, float strokeWidth, float dip1
-    ) {
-        this.dip1 = dip1;
-        this.dip2 = dip1 * 2;
-        this.dip3 = dip1 * 3;
-        this.dip4 = dip1 * 4;
-        this.dip8 = dip1 * 8;
-        this.diph = dip1 / 2;
-        this.stroke = stroke;
-        this.width = width;
-        this.height = height;
-        this.iconWidth = iconWidth;
-        this.circleRadius = circleRadius;
-        this.strokeWidth = strokeWidth;
-        this.sidePadding = (width - iconWidth) / 2;
-        this.topPadding = (height - 5 * dip3) / 2;
+    private MaterialMenuDrawable(int color, long transformDuration, GeometrySpec spec) {
+        this.spec = spec;
 
         initPaint(color);
-        initAnimations((int) transformDuration);
+        transformation = new TransformationDriver(transformationTarget, transformDuration);
 
         materialMenuState = new MaterialMenuState();
     }
 
     private void initPaint(int color) {
-        iconPaint.setAntiAlias(true);
-        iconPaint.setStyle(Style.STROKE);
-        iconPaint.setStrokeWidth(strokeWidth);
-        iconPaint.setColor(color);
+        initIconPaint(iconPaint, spec, color);
+        bitmapPaint.setAlpha(iconPaint.getAlpha());
 
         circlePaint.setAntiAlias(true);
         circlePaint.setStyle(Style.FILL);
         circlePaint.setColor(color);
         circlePaint.setAlpha(DEFAULT_CIRCLE_ALPHA);
 
-        setBounds(0, 0, width, height);
+        setBounds(0, 0, spec.width, spec.height);
+        publishedRect.set(0, 0, spec.width, spec.height);
+        dirtyRect.set(publishedRect);
+    }
+
+    /**
+     * Set up a paint to stroke icon lines with
+     */
+    static void initIconPaint(Paint paint, GeometrySpec spec, int color) {
+        paint.setAntiAlias(true);
+        paint.setStyle(Style.STROKE);
+        paint.setStrokeWidth(spec.strokeWidth);
+        paint.setColor(color);
     }
 
     /*
@@ -260,344 +344,261 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
      */
 
     @Override public void draw(Canvas canvas) {
+        final MaterialMenuMetrics metrics = transformation.getMetrics();
+        if (metrics == null) {
+            drawFrame(canvas);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        drawFrame(canvas);
+        metrics.recordDraw(System.nanoTime() - start);
+    }
+
+    private void drawFrame(Canvas canvas) {
         if (!visible) return;
 
-        final float ratio = transformationValue <= 1 ? transformationValue : 2 - transformationValue;
+        // read state once, so a frame never mixes values of concurrent updates
+        final long snapshot = state.get();
+        final AnimationState animationState = PackedState.animationState(snapshot);
+        final float transformationValue = PackedState.transformationValue(snapshot);
 
-        if (rtlEnabled) {
-            canvas.save();
-            canvas.scale(-1, 1, 0, 0);
-            canvas.translate(-getIntrinsicWidth(), 0);
-        }
+        if (restStateCacheEnabled && drawRestState(canvas, snapshot)) return;
 
-        drawTopLine(canvas, ratio);
-        drawMiddleLine(canvas, ratio);
-        drawBottomLine(canvas, ratio);
+        if (renderMode == RenderMode.SPRITES && colorFilter == null
+            && drawSprite(canvas, animationState, transformationValue)) {
+            return;
+        }
 
-        if (rtlEnabled) {
-            canvas.restore();
+        // icon is drawn at the top left corner of bounds, hosts at the origin need no canvas transform
+        final Rect bounds = getBounds();
+        if (bounds.left == 0 && bounds.top == 0) {
+            drawIcon(canvas, animationState, transformationValue);
+        } else {
+            final int saveCount = canvas.save();
+            canvas.translate(bounds.left, bounds.top);
+            drawIcon(canvas, animationState, transformationValue);
+            canvas.restoreToCount(saveCount);
         }
     }
 
-    private void drawMiddleLine(Canvas canvas, float ratio) {
-        canvas.restore();
-        canvas.save();
-
-        float rotation = 0;
-        float pivotX = width / 2;
-        float pivotY = width / 2;
-        float startX = sidePadding;
-        float startY = topPadding + dip3 / 2 * 5;
-        float stopX = width - sidePadding;
-        float stopY = topPadding + dip3 / 2 * 5;
-        int alpha = 255;
-
-        switch (animationState) {
-            case BURGER_ARROW:
-                // rotate by 180
-                if (isMorphingForward()) {
-                    rotation = ratio * ARROW_MID_LINE_ANGLE;
-                } else {
-                    rotation = ARROW_MID_LINE_ANGLE + (1 - ratio) * ARROW_MID_LINE_ANGLE;
-                }
-                // shorten one end
-                stopX -= ratio * resolveStrokeModifier(ratio) / 2;
-                break;
-            case BURGER_X:
-                // fade out
-                alpha = (int) ((1 - ratio) * 255);
-                break;
-            case ARROW_X:
-                // fade out and shorten one end
-                alpha = (int) ((1 - ratio) * 255);
-                startX += (1 - ratio) * dip2;
-                break;
-            case ARROW_CHECK:
-                if (isMorphingForward()) {
-                    // rotate until required angle
-                    rotation = ratio * CHECK_MIDDLE_ANGLE;
-                } else {
-                    // rotate back to starting angle
-                    rotation = CHECK_MIDDLE_ANGLE - CHECK_MIDDLE_ANGLE * (1 - ratio);
-                }
-                // shorten one end and lengthen the other
-                startX += dip3 / 2 + dip4 - (1 - ratio) * dip2;
-                stopX += ratio * dip1;
-                pivotX = width / 2 + dip3 + diph;
-                break;
-            case BURGER_CHECK:
-                // rotate until required angle
-                rotation = ratio * CHECK_MIDDLE_ANGLE;
-                // lengthen both ends
-                startX += ratio * (dip4 + dip3 / 2);
-                stopX += ratio * dip1;
-                pivotX = width / 2 + dip3 + diph;
-                break;
-            case X_CHECK:
-                // fade in
-                alpha = (int) (ratio * 255);
-                // rotation to check angle
-                rotation = ratio * CHECK_MIDDLE_ANGLE;
-                // lengthen both ends
-                startX += ratio * (dip4 + dip3 / 2);
-                stopX += ratio * dip1;
-                pivotX = width / 2 + dip3 + diph;
-                break;
+    private boolean drawRestState(Canvas canvas, long snapshot) {
+        final IconState restState = resolveRestState(snapshot);
+        if (restState == null || colorFilter != null) return false;
+
+        if (restStateBitmap == null || restStateIcon != restState) {
+            final int color = opaqueIconColor();
+            restStateBitmap = MaterialMenuBitmapCache.get(spec, restState, MaterialMenuBitmapCache.NO_FRAME, color, rtlEnabled);
+            if (restStateBitmap == null) {
+                restStateBitmap = Bitmap.createBitmap(spec.width, spec.height, Bitmap.Config.ARGB_8888);
+                final int alpha = iconPaint.getAlpha();
+                iconPaint.setAlpha(255);
+                drawIcon(
+                    new Canvas(restStateBitmap),
+                    PackedState.animationState(snapshot), PackedState.transformationValue(snapshot)
+                );
+                iconPaint.setAlpha(alpha);
+                MaterialMenuBitmapCache.put(
+                    spec, restState, MaterialMenuBitmapCache.NO_FRAME, color, rtlEnabled, restStateBitmap
+                );
+            }
+            restStateIcon = restState;
         }
 
-        iconPaint.setAlpha(alpha);
-        canvas.rotate(rotation, pivotX, pivotY);
-        canvas.drawLine(startX, startY, stopX, stopY, iconPaint);
-        iconPaint.setAlpha(255);
-    }
-
-    private void drawTopLine(Canvas canvas, float ratio) {
-        canvas.save();
-
-        float rotation = 0, pivotX = 0, pivotY = 0;
-        float rotation2 = 0;
-        // pivot at center of line
-        float pivotX2 = width / 2 + dip3 / 2;
-        float pivotY2 = topPadding + dip2;
-
-        float startX = sidePadding;
-        float startY = topPadding + dip2;
-        float stopX = width - sidePadding;
-        float stopY = topPadding + dip2;
-        int alpha = 255;
-
-        switch (animationState) {
-            case BURGER_ARROW:
-                if (isMorphingForward()) {
-                    // rotate until required angle
-                    rotation = ratio * ARROW_BOT_LINE_ANGLE;
-                } else {
-                    // rotate back to start doing a 360
-                    rotation = ARROW_BOT_LINE_ANGLE + (1 - ratio) * ARROW_TOP_LINE_ANGLE;
-                }
-                // rotate by middle
-                pivotX = width / 2;
-                pivotY = height / 2;
+        canvas.drawBitmap(restStateBitmap, getBounds().left, getBounds().top, bitmapPaint);
+        return true;
+    }
 
-                // shorten both ends
-                stopX -= resolveStrokeModifier(ratio);
-                startX += dip3 * ratio;
+    /**
+     * @return color of the icon at full alpha, cached bitmaps are keyed by it so fading
+     * the icon does not render new ones
+     */
+    private int opaqueIconColor() {
+        return iconPaint.getColor() | 0xff000000;
+    }
 
-                break;
-            case BURGER_X:
-                // rotate until required angles
-                rotation = X_TOP_LINE_ANGLE * ratio;
-                rotation2 = X_ROTATION_ANGLE * ratio;
+    private static IconState resolveRestState(long snapshot) {
+        if (PackedState.isRunning(snapshot)) return null;
 
-                // pivot at left corner of line
-                pivotX = sidePadding + dip4;
-                pivotY = topPadding + dip3;
+        final AnimationState animationState = PackedState.animationState(snapshot);
+        final float transformationValue = PackedState.transformationValue(snapshot);
 
-                // shorten one end
-                startX += dip3 * ratio;
-                break;
-            case ARROW_X:
-                // rotate from ARROW angle to X angle
-                rotation = ARROW_BOT_LINE_ANGLE + (X_TOP_LINE_ANGLE - ARROW_BOT_LINE_ANGLE) * ratio;
-                rotation2 = X_ROTATION_ANGLE * ratio;
-
-                // move pivot from ARROW pivot to X pivot
-                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
-                pivotY = height / 2 + (topPadding + dip3 - height / 2) * ratio;
-
-                // lengthen both ends
-                stopX -= resolveStrokeModifier(ratio);
-                startX += dip3;
-                break;
-            case ARROW_CHECK:
-                // fade out
-                alpha = (int) ((1 - ratio) * 255);
-                // retain starting arrow configuration
-                rotation = ARROW_BOT_LINE_ANGLE;
-                pivotX = width / 2;
-                pivotY = height / 2;
-
-                // shorted both ends
-                stopX -= resolveStrokeModifier(1);
-                startX += dip3;
-                break;
-            case BURGER_CHECK:
-                // fade out
-                alpha = (int) ((1 - ratio) * 255);
-                break;
-            case X_CHECK:
-                // retain X configuration
-                rotation = X_TOP_LINE_ANGLE;
-                rotation2 = X_ROTATION_ANGLE;
-                pivotX = sidePadding + dip4;
-                pivotY = topPadding + dip3;
-                stopX += dip3 - dip3 * (1 - ratio);
-                startX += dip3;
-
-                // fade out
-                alpha = (int) ((1 - ratio) * 255);
-                break;
+        if (transformationValue == TRANSFORMATION_START || transformationValue == TRANSFORMATION_END) {
+            return animationState.getFirstState();
         }
+        if (transformationValue == TRANSFORMATION_MID) {
+            return animationState.getSecondState();
+        }
+        return null;
+    }
 
-        iconPaint.setAlpha(alpha);
-        canvas.rotate(rotation, pivotX, pivotY);
-        canvas.rotate(rotation2, pivotX2, pivotY2);
-        canvas.drawLine(startX, startY, stopX, stopY, iconPaint);
-        iconPaint.setAlpha(255);
-    }
-
-    private void drawBottomLine(Canvas canvas, float ratio) {
-        canvas.restore();
-        canvas.save();
-
-        float rotation = 0, pivotX = 0, pivotY = 0;
-        float rotation2 = 0;
-        // pivot at center of line
-        float pivotX2 = width / 2 + dip3 / 2;
-        float pivotY2 = height - topPadding - dip2;
-
-        float startX = sidePadding;
-        float startY = height - topPadding - dip2;
-        float stopX = width - sidePadding;
-        float stopY = height - topPadding - dip2;
-
-        switch (animationState) {
-            case BURGER_ARROW:
-                if (isMorphingForward()) {
-                    // rotate to required angle
-                    rotation = ARROW_TOP_LINE_ANGLE * ratio;
-                } else {
-                    // rotate back to start doing a 360
-                    rotation = ARROW_TOP_LINE_ANGLE + (1 - ratio) * ARROW_BOT_LINE_ANGLE;
-                }
-                // pivot center of canvas
-                pivotX = width / 2;
-                pivotY = height / 2;
-
-                // shorten both ends
-                stopX = width - sidePadding - resolveStrokeModifier(ratio);
-                startX = sidePadding + dip3 * ratio;
-                break;
-            case BURGER_X:
-                if (isMorphingForward()) {
-                    // rotate around
-                    rotation2 = -X_ROTATION_ANGLE * ratio;
-                } else {
-                    // rotate directly
-                    rotation2 = X_ROTATION_ANGLE * ratio;
-                }
-                // rotate to required angle
-                rotation = X_BOT_LINE_ANGLE * ratio;
+    private void dropCachedBitmaps() {
+        restStateBitmap = null;
+        restStateIcon = null;
+        spriteAtlas = null;
+        spriteState = null;
+        spriteRequests = 0;
+        if (renderMode == RenderMode.SPRITES) {
+            prepareSprites();
+        }
+    }
 
-                // pivot left corner of line
-                pivotX = sidePadding + dip4;
-                pivotY = height - topPadding - dip3;
+    /**
+     * @return false when the atlas of given transformation is not ready and lines need to be drawn instead
+     */
+    private boolean drawSprite(Canvas canvas, AnimationState animationState, float transformationValue) {
+        if (spriteState != animationState) {
+            spriteState = animationState;
+            spriteAtlas = SpriteAtlas.get(spec, animationState, opaqueIconColor(), rtlEnabled);
+            if (spriteAtlas == null) {
+                // not prepared ahead, i.e. a transformation set by offset, never rendered on this thread
+                requestSpriteAtlas(animationState);
+            }
+        }
+        if (spriteAtlas == null) return false;
 
-                // shorten one end
-                startX += dip3 * ratio;
-                break;
-            case ARROW_X:
-                // rotate from ARROW angle to X angle
-                rotation = ARROW_TOP_LINE_ANGLE + (360 + X_BOT_LINE_ANGLE - ARROW_TOP_LINE_ANGLE) * ratio;
-                rotation2 = -X_ROTATION_ANGLE * ratio;
-
-                // move pivot from ARROW pivot to X pivot
-                pivotX = width / 2 + (sidePadding + dip4 - width / 2) * ratio;
-                pivotY = height / 2 + (height / 2 - topPadding - dip3) * ratio;
-
-                // lengthen both ends
-                stopX -= resolveStrokeModifier(ratio);
-                startX += dip3;
-                break;
-            case ARROW_CHECK:
-                // rotate from ARROW angle to CHECK angle
-                rotation = ARROW_TOP_LINE_ANGLE + ratio * CHECK_BOTTOM_ANGLE;
+        final Rect bounds = getBounds();
+        spriteAtlas.drawFrame(
+            canvas, transformationValue, bounds.left, bounds.top, spriteSource, spriteTarget, bitmapPaint
+        );
+        return true;
+    }
 
-                // move pivot from ARROW pivot to CHECK pivot
-                pivotX = width / 2 + dip3 * ratio;
-                pivotY = height / 2 - dip3 * ratio;
+    /**
+     * Render atlases of all transformations out of the current icon state ahead of their first frame
+     */
+    private void prepareSprites() {
+        // requests are tracked on the main thread, the first frame requests a missing atlas otherwise
+        if (!FrameClock.isMainThread()) return;
+
+        final IconState iconState = PackedState.currentIconState(state.get());
+        for (AnimationState animationState : ANIMATION_STATES) {
+            if (animationState.getFirstState() == iconState || animationState.getSecondState() == iconState) {
+                requestSpriteAtlas(animationState);
+            }
+        }
+    }
 
-                // length stays same as ARROW
-                stopX -= resolveStrokeModifier(1);
-                startX += dip3 + (dip4 + dip1) * ratio;
-                break;
-            case BURGER_CHECK:
-                // rotate from ARROW angle to CHECK angle
-                rotation = ratio * (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE);
+    private void requestSpriteAtlas(AnimationState animationState) {
+        final int request = 1 << animationState.ordinal();
+        if ((spriteRequests & request) != 0) return;
 
-                // move pivot from BURGER pivot to CHECK pivot
-                pivotX = width / 2 + dip3 * ratio;
-                pivotY = height / 2 - dip3 * ratio;
+        if (SpriteAtlas.render(spec, animationState, iconPaint, rtlEnabled, spriteCallback)) {
+            spriteRequests |= request;
+        }
+    }
 
-                // length stays same as BURGER
-                startX += dip8 * ratio;
-                stopX -= resolveStrokeModifier(ratio);
-                break;
-            case X_CHECK:
-                // rotate from X to CHECK angles
-                rotation2 = -X_ROTATION_ANGLE * (1 - ratio);
-                rotation = X_BOT_LINE_ANGLE + (CHECK_BOTTOM_ANGLE + ARROW_TOP_LINE_ANGLE - X_BOT_LINE_ANGLE) * ratio;
-
-                // move pivot from X to CHECK
-                pivotX = sidePadding + dip4 + (width / 2 + dip3 - sidePadding - dip4) * ratio;
-                pivotY = height - topPadding - dip3 + (topPadding + height / 2 - height) * ratio;
-
-                // shorten both ends
-                startX += dip8 - (dip4 + dip1) * (1 - ratio);
-                stopX -= resolveStrokeModifier(1 - ratio);
+    private void drawIcon(Canvas canvas, AnimationState animationState, float transformationValue) {
+        switch (renderMode) {
+            case PATH:
+                drawPath(canvas, animationState, transformationValue);
                 break;
+            default:
+                drawLines(canvas, animationState, transformationValue);
         }
+    }
 
-        canvas.rotate(rotation, pivotX, pivotY);
-        canvas.rotate(rotation2, pivotX2, pivotY2);
-        canvas.drawLine(startX, startY, stopX, stopY, iconPaint);
+    private void drawLines(Canvas canvas, AnimationState animationState, float transformationValue) {
+        spec.transitionTable.sampleLines(animationState.ordinal(), transformationValue, rtlEnabled, frame, lines);
+        drawLines(canvas, lines, batch, iconPaint);
     }
 
-    private boolean isMorphingForward() {
-        return transformationValue <= TRANSFORMATION_MID;
+    /**
+     * Draw lines sampled by {@link TransitionTable#sampleLines}
+     *
+     * @param batch scratch buffer of {@link TransitionTable#LINE_COUNT} * 4 floats
+     */
+    static void drawLines(Canvas canvas, float[] lines, float[] batch, Paint paint) {
+        // fully opaque lines share a single draw call, fading ones need their own alpha
+        int batchSize = 0;
+        for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+            if (lines[offset + TransitionTable.LINE_ALPHA] >= 255) {
+                System.arraycopy(lines, offset, batch, batchSize, 4);
+                batchSize += 4;
+            }
+        }
+
+        drawFadingLines(canvas, lines, paint);
+        if (batchSize > 0) {
+            canvas.drawLines(batch, 0, batchSize, paint);
+        }
     }
 
-    private float resolveStrokeModifier(float ratio) {
-        switch (stroke) {
-            case REGULAR:
-                if (animationState == AnimationState.ARROW_X || animationState == AnimationState.X_CHECK) {
-                    return dip3 - (dip3 * ratio);
-                }
-                return ratio * dip3;
-            case THIN:
-                if (animationState == AnimationState.ARROW_X || animationState == AnimationState.X_CHECK) {
-                    return dip3 + diph - (dip3 + diph) * ratio;
-                }
-                return ratio * (dip3 + diph);
-            case EXTRA_THIN:
-                if (animationState == AnimationState.ARROW_X || animationState == AnimationState.X_CHECK) {
-                    return dip4 - ((dip3 + dip1) * ratio);
+    private void drawPath(Canvas canvas, AnimationState animationState, float transformationValue) {
+        // rebuild the path only when geometry changes, so renderers can keep reusing it at rest
+        if (pathState != animationState || pathValue != transformationValue || pathRtl != rtlEnabled) {
+            spec.transitionTable.sampleLines(animationState.ordinal(), transformationValue, rtlEnabled, frame, pathLines);
+
+            path.rewind();
+            for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+                if (pathLines[offset + TransitionTable.LINE_ALPHA] >= 255) {
+                    path.moveTo(pathLines[offset + TransitionTable.LINE_START_X], pathLines[offset + TransitionTable.LINE_START_Y]);
+                    path.lineTo(pathLines[offset + TransitionTable.LINE_STOP_X], pathLines[offset + TransitionTable.LINE_STOP_Y]);
                 }
-                return ratio * dip4;
+            }
+
+            pathState = animationState;
+            pathValue = transformationValue;
+            pathRtl = rtlEnabled;
+        }
+
+        drawFadingLines(canvas, pathLines, iconPaint);
+        canvas.drawPath(path, iconPaint);
+    }
+
+    private static void drawFadingLines(Canvas canvas, float[] lines, Paint paint) {
+        final int paintAlpha = paint.getAlpha();
+        for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+            final int alpha = (int) lines[offset + TransitionTable.LINE_ALPHA];
+            if (alpha > 0 && alpha < 255) {
+                paint.setAlpha(alpha * paintAlpha / 255);
+                canvas.drawLine(
+                    lines[offset + TransitionTable.LINE_START_X],
+                    lines[offset + TransitionTable.LINE_START_Y],
+                    lines[offset + TransitionTable.LINE_STOP_X],
+                    lines[offset + TransitionTable.LINE_STOP_Y],
+                    paint
+                );
+                paint.setAlpha(paintAlpha);
+            }
         }
-        return 0;
     }
 
     @Override public void setAlpha(int alpha) {
         iconPaint.setAlpha(alpha);
+        bitmapPaint.setAlpha(alpha);
     }
 
     @Override public void setColorFilter(ColorFilter cf) {
         iconPaint.setColorFilter(cf);
+        colorFilter = cf;
     }
 
     @Override public int getOpacity() {
         return PixelFormat.TRANSPARENT;
     }
 
+    @Override protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        dropCachedBitmaps();
+    }
+
     /*
      * Accessor methods
      */
 
     public void setColor(int color) {
+        if (iconPaint.getColor() == color) return;
+
+        final int opaqueColor = opaqueIconColor();
         iconPaint.setColor(color);
         circlePaint.setColor(color);
-        invalidateSelf();
+        bitmapPaint.setAlpha(iconPaint.getAlpha());
+        // cached bitmaps are drawn at the new alpha, only another hue needs new ones
+        if (opaqueIconColor() != opaqueColor) {
+            dropCachedBitmaps();
+        }
+        invalidateContent();
     }
 
     public void setTransformationDuration(int duration) {
@@ -608,59 +609,197 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
         transformation.setInterpolator(interpolator);
     }
 
+    /**
+     * Drive transformations with a damped spring instead of a fixed duration and interpolator.
+     * Animation listener is not notified of spring transformations.
+     *
+     * @param stiffness    spring stiffness, 0 to go back to duration based transformations
+     * @param dampingRatio 1 for no overshoot, less than 1 to bounce around the target
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        transformation.setSpring(stiffness, dampingRatio);
+    }
+
+    /**
+     * Step duration based transformations from display frame times instead of the animator.
+     * Offsets are computed from vsync timestamps, so a missed frame is caught up on the next
+     * one rather than slowing the transformation down. Animation listener is not notified
+     * of transformations stepped this way. A running transformation continues from where it
+     * is on the new clock.
+     *
+     * @param enabled true to step transformations on vsync
+     */
+    public void setVsyncAnimationEnabled(boolean enabled) {
+        transformation.setVsyncAnimationEnabled(enabled);
+    }
+
+    /**
+     * Switch to a cheaper render mode when frames are being missed while this drawable is
+     * animating on vsync or with a spring, see {@link MaterialMenuScheduler#isOverBudget()}
+     *
+     * @param fallback render mode to switch to, or null to keep the current one
+     */
+    public void setFrameBudgetFallback(RenderMode fallback) {
+        budgetFallback = fallback;
+    }
+
+    /**
+     * Snap transformation offsets to discrete steps, so the icon is redrawn only when
+     * the offset crosses into another step. Useful for slow drags and long durations.
+     *
+     * @param steps steps per transformation, 0 to draw every offset
+     */
+    public void setTransformationSteps(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Steps must not be negative");
+        }
+        transformationSteps = steps;
+    }
+
+    /**
+     * Record drawing and transformation performance into given metrics
+     *
+     * @param metrics metrics to record into, or null to stop recording
+     */
+    public void setMetrics(MaterialMenuMetrics metrics) {
+        transformation.setMetrics(metrics);
+    }
+
+    public MaterialMenuMetrics getMetrics() {
+        return transformation.getMetrics();
+    }
+
     public void setAnimationListener(AnimatorListener listener) {
-        if (animatorListener != null) {
-            transformation.removeListener(animatorListener);
+        transformation.setAnimationListener(listener);
+    }
+
+    /**
+     * Set icon state right away, stopping any running transformation. May be called from
+     * any thread, off the main thread the transformation driver is stopped on the next frame.
+     *
+     * @param iconState new icon state
+     */
+    public void setIconState(IconState iconState) {
+        dropIconStateRequest();
+        changeIconState(iconState);
+    }
+
+    private void changeIconState(IconState iconState) {
+        clearPendingIconState();
+        final boolean mainThread = FrameClock.isMainThread();
+        if (mainThread) {
+            transformation.cancel();
         }
 
-        if (listener != null) {
-            transformation.addListener(listener);
+        while (true) {
+            final long current = state.get();
+            final boolean changed = PackedState.currentIconState(current) != iconState;
+            final long update = changed
+                ? PackedState.pack(
+                    iconState, PackedState.animatingIconState(current),
+                    restAnimationState(iconState), false, restTransformationValue(iconState)
+                )
+                : PackedState.withRunning(current, false);
+
+            if (state.compareAndSet(current, update)) {
+                if (!mainThread) {
+                    FrameClock.getInstance().postFrameCallback(transformationDispatcher);
+                }
+                if (changed) {
+                    invalidate();
+                    if (renderMode == RenderMode.SPRITES) prepareSprites();
+                }
+                return;
+            }
         }
+    }
 
-        animatorListener = listener;
+    /**
+     * Animate to given icon state. Transformations are driven on the main thread, called
+     * from any other thread this is the same as {@link #requestIconState(IconState)}.
+     *
+     * @param iconState new icon state
+     */
+    public void animateIconState(IconState iconState) {
+        if (!FrameClock.isMainThread()) {
+            requestIconState(iconState);
+            return;
+        }
+
+        dropIconStateRequest();
+        animateToIconState(iconState);
     }
 
-    public void setIconState(IconState iconState) {
-        synchronized (lock) {
-            if (transformationRunning) {
-                transformation.cancel();
-                transformationRunning = false;
+    private void animateToIconState(IconState iconState) {
+        final MaterialMenuMetrics metrics = transformation.getMetrics();
+        if (metrics != null) {
+            // only a call changing where the running transformation ends interrupts it
+            final long snapshot = state.get();
+            if (PackedState.isRunning(snapshot) && resolveTargetIconState(snapshot) != iconState) {
+                metrics.recordInterruption();
+            }
+        }
+
+        while (true) {
+            final long current = state.get();
+            if (!PackedState.isRunning(current)) {
+                if (state.compareAndSet(current, PackedState.withAnimatingIconState(current, iconState))) break;
+                continue;
             }
 
-            if (currentIconState == iconState) return;
-
-            switch (iconState) {
-                case BURGER:
-                    animationState = AnimationState.BURGER_ARROW;
-                    transformationValue = TRANSFORMATION_START;
-                    break;
-                case ARROW:
-                    animationState = AnimationState.BURGER_ARROW;
-                    transformationValue = TRANSFORMATION_MID;
-                    break;
-                case X:
-                    animationState = AnimationState.BURGER_X;
-                    transformationValue = TRANSFORMATION_MID;
-                    break;
-                case CHECK:
-                    animationState = AnimationState.BURGER_CHECK;
-                    transformationValue = TRANSFORMATION_MID;
+            final AnimationState animationState = PackedState.animationState(current);
+            if (iconState == PackedState.animatingIconState(current)) {
+                // already heading there, drop any leg queued after it
+                if (state.compareAndSet(current, PackedState.withPendingIconState(current, null))) return;
+            } else if (iconState == animationState.getFirstState() || iconState == animationState.getSecondState()) {
+                // reverse the running transformation from where it is now
+                final float value = PackedState.transformationValue(current);
+                final float target = iconState == animationState.getSecondState()
+                    ? TRANSFORMATION_MID
+                    : value <= TRANSFORMATION_MID ? TRANSFORMATION_START : TRANSFORMATION_END;
+                animateTransformation(animationState, value, target, iconState, transformation.getVelocity());
+                return;
+            } else {
+                // no transformation leads from a mid-way shape, finish the running one and continue from there
+                if (state.compareAndSet(current, PackedState.withPendingIconState(current, iconState))) return;
             }
-            currentIconState = iconState;
-            invalidateSelf();
         }
+        start();
     }
 
-    public void animateIconState(IconState state) {
-        synchronized (lock) {
-            if (transformationRunning) {
-                transformation.end();
-            }
-            animatingIconState = state;
-            start();
+    /**
+     * Request animating to given state from any thread. Requests made before the next
+     * frame are coalesced, only the latest one is animated to.
+     *
+     * @param iconState new icon state
+     */
+    public void requestIconState(IconState iconState) {
+        if (requestedIconState.getAndSet(iconState) == null) {
+            FrameClock.getInstance().postFrameCallback(requestDispatcher);
         }
     }
 
+    /**
+     * Drop a request made before a direct call, so the latest call wins whichever method made it.
+     * The dispatcher stays posted and finds nothing to apply, removing it could race a new request.
+     */
+    private void dropIconStateRequest() {
+        requestedIconState.set(null);
+    }
+
+    /**
+     * @return icon state the drawable is animating to, or rests in when no animation is running
+     */
+    private static IconState resolveTargetIconState(long snapshot) {
+        final IconState pending = PackedState.pendingIconState(snapshot);
+        if (PackedState.isRunning(snapshot) && pending != null) return pending;
+
+        final IconState animating = PackedState.animatingIconState(snapshot);
+        return PackedState.isRunning(snapshot) && animating != null
+            ? animating
+            : PackedState.currentIconState(snapshot);
+    }
+
     public IconState setTransformationOffset(AnimationState animationState, float offset) {
         if (offset < TRANSFORMATION_START || offset > TRANSFORMATION_END) {
             throw new IllegalArgumentException(
@@ -668,30 +807,197 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
             );
         }
 
-        this.animationState = animationState;
+        // the offset takes over from a running transformation and drops any leg queued after it
+        final boolean mainThread = FrameClock.isMainThread();
+        if (mainThread) {
+            transformation.cancel();
+        }
+        final IconState currentIconState = applyTransformationOffset(animationState, offset, null);
+        if (!mainThread) {
+            FrameClock.getInstance().postFrameCallback(transformationDispatcher);
+        }
+        return currentIconState;
+    }
+
+    /**
+     * @param targetIconState icon state a transformation running from given offset animates
+     *                        to, or null when no transformation is running
+     * @return icon state at given offset
+     */
+    private IconState applyTransformationOffset(AnimationState animationState, float offset, IconState targetIconState) {
+        // icon state follows the offset that is drawn, not the one passed in
+        final float quantized = quantize(offset);
+        final boolean isFirstIcon = quantized < TRANSFORMATION_MID || quantized == TRANSFORMATION_END;
+
+        final IconState currentIconState = isFirstIcon ? animationState.getFirstState() : animationState.getSecondState();
+        final IconState animatingIconState = targetIconState != null
+            ? targetIconState
+            : isFirstIcon ? animationState.getSecondState() : animationState.getFirstState();
+
+        while (true) {
+            final long current = state.get();
+            final long update = PackedState.pack(
+                currentIconState, animatingIconState, animationState, targetIconState != null, quantized
+            );
+            if (update == current) return currentIconState;
+            if (state.compareAndSet(current, update)) break;
+        }
+        invalidate();
+
+        return currentIconState;
+    }
+
+    /**
+     * Track a transformation offset from any thread, for example from drawer or scroll
+     * callbacks. Only the latest offset is kept and it is applied once per frame.
+     *
+     * @param animationState state to set value in
+     * @param offset         between 0 and 2, as in {@link #setTransformationOffset(AnimationState, float)}
+     */
+    public void trackTransformationOffset(AnimationState animationState, float offset) {
+        if (offset < TRANSFORMATION_START || offset > TRANSFORMATION_END) {
+            throw new IllegalArgumentException(
+                String.format("Value must be between %s and %s", TRANSFORMATION_START, TRANSFORMATION_END)
+            );
+        }
+
+        final long tracked = (long) (animationState.ordinal() + 1) << 32 | (Float.floatToIntBits(offset) & 0xffffffffL);
+        if (trackedOffset.getAndSet(tracked) == 0) {
+            FrameClock.getInstance().postFrameCallback(trackingDispatcher);
+        }
+    }
 
-        final boolean isFirstIcon = offset < TRANSFORMATION_MID || offset == TRANSFORMATION_END;
+    /**
+     * Finish tracking and animate from the current offset to the nearest icon state in
+     * direction of given velocity. Must be called from the main thread.
+     *
+     * @param velocity offset change per second, 0 to settle at the closest icon state
+     * @return icon state being settled at
+     */
+    public IconState settleTransformationOffset(float velocity) {
+        FrameClock.getInstance().removeFrameCallback(trackingDispatcher);
+        applyTrackedOffset();
+
+        final long current = state.get();
+        final AnimationState animationState = PackedState.animationState(current);
+        final float value = PackedState.transformationValue(current);
+
+        final float target;
+        if (velocity > 0) {
+            target = value < TRANSFORMATION_MID ? TRANSFORMATION_MID : TRANSFORMATION_END;
+        } else if (velocity < 0) {
+            target = value > TRANSFORMATION_MID ? TRANSFORMATION_MID : TRANSFORMATION_START;
+        } else {
+            target = Math.round(value);
+        }
 
-        currentIconState = isFirstIcon ? animationState.getFirstState() : animationState.getSecondState();
-        animatingIconState = isFirstIcon ? animationState.getSecondState() : animationState.getFirstState();
+        if (value == target) {
+            return setTransformationOffset(animationState, target);
+        }
 
-        setTransformationValue(offset);
+        final IconState targetIconState = target == TRANSFORMATION_MID
+            ? animationState.getSecondState()
+            : animationState.getFirstState();
 
-        return currentIconState;
+        animateTransformation(animationState, value, target, targetIconState, velocity);
+        return targetIconState;
+    }
+
+    /**
+     * Animate from given offset to target, taking over from the running transformation if there is one
+     *
+     * @param velocity offset change per second
+     */
+    private void animateTransformation(
+        AnimationState animationState, float value, float target, IconState targetIconState, float velocity
+    ) {
+        // the driver is retargeted in place, so a running spring keeps its frame timing
+        applyTransformationOffset(animationState, value, targetIconState);
+        transformation.run(value, target, velocity);
+    }
+
+    private void clearPendingIconState() {
+        while (true) {
+            final long current = state.get();
+            if (state.compareAndSet(current, PackedState.withPendingIconState(current, null))) return;
+        }
+    }
+
+    private void applyTrackedOffset() {
+        final long tracked = trackedOffset.getAndSet(0);
+        if (tracked == 0) return;
+
+        setTransformationOffset(
+            ANIMATION_STATES[(int) (tracked >>> 32) - 1],
+            Float.intBitsToFloat((int) tracked)
+        );
     }
 
     public void setVisible(boolean visible) {
+        if (this.visible == visible) return;
+
         this.visible = visible;
-        invalidateSelf();
+        invalidateContent();
     }
 
     public void setRTLEnabled(boolean rtlEnabled) {
+        if (this.rtlEnabled == rtlEnabled) return;
+
         this.rtlEnabled = rtlEnabled;
+        dropCachedBitmaps();
+        invalidate();
+    }
+
+    /**
+     * Cache rendered BURGER, ARROW, X and CHECK icons and draw them as a single bitmap
+     * while no transformation is running. Bitmaps are shared between drawables of the
+     * same size, color, stroke and layout direction.
+     *
+     * @param enabled true to draw icons at rest from cache
+     */
+    public void setRestStateCacheEnabled(boolean enabled) {
+        this.restStateCacheEnabled = enabled;
+        dropCachedBitmaps();
+    }
+
+    /**
+     * Set how icon lines are emitted to the canvas
+     *
+     * @param renderMode new render mode, {@link RenderMode#LINES} by default
+     */
+    public void setRenderMode(RenderMode renderMode) {
+        if (this.renderMode == renderMode) return;
+
+        this.renderMode = renderMode;
+        if (renderMode == RenderMode.SPRITES) {
+            prepareSprites();
+        }
+        // frames of the previous mode may have covered other pixels than the lines do
+        dirtyRect.set(0, 0, spec.width, spec.height);
         invalidateSelf();
     }
 
     public IconState getIconState() {
-        return currentIconState;
+        return PackedState.currentIconState(state.get());
+    }
+
+    /**
+     * @return icon state the drawable has been requested or is animating to, or rests in otherwise
+     */
+    IconState getTargetIconState() {
+        final IconState requested = requestedIconState.get();
+        if (requested != null) return requested;
+
+        // an offset tracked since the last frame is about to be applied
+        final long tracked = trackedOffset.get();
+        if (tracked != 0) {
+            final AnimationState animationState = ANIMATION_STATES[(int) (tracked >>> 32) - 1];
+            final float offset = quantize(Float.intBitsToFloat((int) tracked));
+            return offset < TRANSFORMATION_MID || offset == TRANSFORMATION_END
+                ? animationState.getFirstState()
+                : animationState.getSecondState();
+        }
+        return resolveTargetIconState(state.get());
     }
 
     public boolean isDrawableVisible() {
@@ -701,121 +1007,214 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
     /*
      * Animations
      */
-    private Property<MaterialMenuDrawable, Float> transformationProperty
-        = new Property<MaterialMenuDrawable, Float>(Float.class, "transformation") {
-        @Override
-        public Float get(MaterialMenuDrawable object) {
-            return object.getTransformationValue();
-        }
-
-        @Override
-        public void set(MaterialMenuDrawable object, Float value) {
-            object.setTransformationValue(value);
-        }
-    };
-
     public Float getTransformationValue() {
-        return transformationValue;
+        return PackedState.transformationValue(state.get());
     }
 
     public void setTransformationValue(Float value) {
-        this.transformationValue = value;
-        invalidateSelf();
+        updateTransformationValue(value, false);
     }
 
-    private void initAnimations(int transformDuration) {
-        transformation = ObjectAnimator.ofFloat(this, transformationProperty, 0);
-        transformation.setInterpolator(new DecelerateInterpolator(3));
-        transformation.setDuration(transformDuration);
-        transformation.addListener(new AnimatorListenerAdapter() {
-            @Override public void onAnimationEnd(Animator animation) {
-                transformationRunning = false;
-                setIconState(animatingIconState);
-            }
-        });
+    /**
+     * @param driven true for offsets of the transformation driver, which are dropped once
+     *               the transformation was stopped from another thread
+     */
+    private void updateTransformationValue(float value, boolean driven) {
+        final float quantized = quantize(value);
+        while (true) {
+            final long current = state.get();
+            if (driven && !PackedState.isRunning(current)) return;
+            // still within the same step, nothing to redraw
+            if (PackedState.transformationValue(current) == quantized) return;
+            if (state.compareAndSet(current, PackedState.withTransformationValue(current, quantized))) break;
+        }
+        invalidate();
     }
 
-    private boolean resolveTransformation() {
-        boolean isCurrentBurger = currentIconState == IconState.BURGER;
-        boolean isCurrentArrow = currentIconState == IconState.ARROW;
-        boolean isCurrentX = currentIconState == IconState.X;
-        boolean isCurrentCheck = currentIconState == IconState.CHECK;
-        boolean isAnimatingBurger = animatingIconState == IconState.BURGER;
-        boolean isAnimatingArrow = animatingIconState == IconState.ARROW;
-        boolean isAnimatingX = animatingIconState == IconState.X;
-        boolean isAnimatingCheck = animatingIconState == IconState.CHECK;
+    private float quantize(float value) {
+        final int steps = transformationSteps;
+        return steps == 0 ? value : Math.round(value * steps) / (float) steps;
+    }
 
-        if ((isCurrentBurger && isAnimatingArrow) || (isCurrentArrow && isAnimatingBurger)) {
-            animationState = AnimationState.BURGER_ARROW;
-            return isCurrentBurger;
+    /**
+     * Invalidates changed geometry right away on the main thread, otherwise schedules it on the main thread
+     */
+    private void invalidate() {
+        if (FrameClock.isMainThread()) {
+            invalidateGeometry();
+        } else {
+            scheduleSelf(invalidator, SystemClock.uptimeMillis());
         }
+    }
 
-        if ((isCurrentArrow && isAnimatingX) || (isCurrentX && isAnimatingArrow)) {
-            animationState = AnimationState.ARROW_X;
-            return isCurrentArrow;
-        }
+    /**
+     * Invalidates area covered by previous and current lines, unless lines have not moved
+     */
+    private void invalidateGeometry() {
+        final long snapshot = state.get();
+        spec.transitionTable.sampleLines(
+            PackedState.animationState(snapshot).ordinal(), PackedState.transformationValue(snapshot),
+            rtlEnabled, dirtyFrame, dirtyLines
+        );
+        if (Arrays.equals(dirtyLines, publishedLines)) return;
 
-        if ((isCurrentBurger && isAnimatingX) || (isCurrentX && isAnimatingBurger)) {
-            animationState = AnimationState.BURGER_X;
-            return isCurrentBurger;
-        }
+        System.arraycopy(dirtyLines, 0, publishedLines, 0, TransitionTable.LINES_SIZE);
+        dirtyRect.set(publishedRect);
+        resolveLineBounds(publishedLines, publishedRect);
+        dirtyRect.union(publishedRect);
+        invalidateContent(dirtyRect);
+    }
+
+    /**
+     * Invalidates area covered by current lines, when their pixels change but geometry does not
+     */
+    private void invalidateContent() {
+        invalidateContent(publishedRect);
+    }
 
-        if ((isCurrentArrow && isAnimatingCheck) || (isCurrentCheck && isAnimatingArrow)) {
-            animationState = AnimationState.ARROW_CHECK;
-            return isCurrentArrow;
+    private void invalidateContent(Rect lineRect) {
+        if (renderMode == RenderMode.SPRITES) {
+            // a sprite frame is sampled next to the exact lines, only the whole icon is known to cover it
+            dirtyRect.set(0, 0, spec.width, spec.height);
+        } else {
+            dirtyRect.set(lineRect);
         }
+        invalidateSelf();
+    }
 
-        if ((isCurrentBurger && isAnimatingCheck) || (isCurrentCheck && isAnimatingBurger)) {
-            animationState = AnimationState.BURGER_CHECK;
-            return isCurrentBurger;
+    private void resolveLineBounds(float[] lines, Rect out) {
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+
+        for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+            if (lines[offset + TransitionTable.LINE_ALPHA] < 1) continue;
+
+            final float startX = lines[offset + TransitionTable.LINE_START_X];
+            final float startY = lines[offset + TransitionTable.LINE_START_Y];
+            final float stopX = lines[offset + TransitionTable.LINE_STOP_X];
+            final float stopY = lines[offset + TransitionTable.LINE_STOP_Y];
+            left = Math.min(left, Math.min(startX, stopX));
+            top = Math.min(top, Math.min(startY, stopY));
+            right = Math.max(right, Math.max(startX, stopX));
+            bottom = Math.max(bottom, Math.max(startY, stopY));
         }
 
-        if ((isCurrentX && isAnimatingCheck) || (isCurrentCheck && isAnimatingX)) {
-            animationState = AnimationState.X_CHECK;
-            return isCurrentX;
+        if (left > right) {
+            out.setEmpty();
+            return;
         }
 
-        throw new IllegalStateException(
-            String.format("Animating from %s to %s is not supported", currentIconState, animatingIconState)
+        // stroke extends half its width around lines, plus a pixel of anti-aliasing
+        final float inset = spec.strokeWidth / 2 + 1;
+        out.set(
+            (int) Math.floor(left - inset), (int) Math.floor(top - inset),
+            (int) Math.ceil(right + inset), (int) Math.ceil(bottom + inset)
         );
     }
 
-    @Override public void start() {
-        if (transformationRunning) return;
+    /**
+     * @return area changed since the previous invalidation, in the same coordinates as bounds
+     */
+    @Override public Rect getDirtyBounds() {
+        final Rect bounds = getBounds();
+        boundsDirtyRect.set(dirtyRect);
+        boundsDirtyRect.offset(bounds.left, bounds.top);
+        return boundsDirtyRect;
+    }
 
-        if (animatingIconState != null && animatingIconState != currentIconState) {
-            transformationRunning = true;
+    /**
+     * Settle at the icon state the finished transformation was animating to
+     */
+    private void finishTransformation() {
+        while (true) {
+            final long current = state.get();
+            // already stopped, e.g. by an icon state set from another thread
+            if (!PackedState.isRunning(current)) return;
+
+            final long update = PackedState.withPendingIconState(PackedState.withRunning(current, false), null);
+            if (state.compareAndSet(current, update)) {
+                changeIconState(PackedState.animatingIconState(current));
+
+                // continue with the leg queued while this one was running
+                final IconState pending = PackedState.pendingIconState(current);
+                if (pending != null) {
+                    animateToIconState(pending);
+                }
+                return;
+            }
+        }
+    }
 
-            final boolean direction = resolveTransformation();
-            transformation.setFloatValues(
-                direction ? TRANSFORMATION_START : TRANSFORMATION_MID,
-                direction ? TRANSFORMATION_MID : TRANSFORMATION_END
+    static AnimationState resolveTransformation(IconState currentIconState, IconState animatingIconState) {
+        final AnimationState animationState =
+            TRANSFORMATIONS[currentIconState.ordinal() * ICON_STATE_COUNT + animatingIconState.ordinal()];
+        if (animationState == null) {
+            throw new IllegalStateException(
+                String.format("Animating from %s to %s is not supported", currentIconState, animatingIconState)
             );
-            transformation.start();
         }
+        return animationState;
+    }
 
-        invalidateSelf();
+    @Override public void start() {
+        if (!FrameClock.isMainThread()) {
+            // transformations are driven on the main thread
+            final IconState animatingIconState = PackedState.animatingIconState(state.get());
+            if (animatingIconState != null) {
+                requestIconState(animatingIconState);
+            }
+            return;
+        }
+
+        while (true) {
+            final long current = state.get();
+            if (PackedState.isRunning(current)) return;
+
+            final IconState currentIconState = PackedState.currentIconState(current);
+            final IconState animatingIconState = PackedState.animatingIconState(current);
+            if (animatingIconState == null || animatingIconState == currentIconState) break;
+
+            final AnimationState animationState = resolveTransformation(currentIconState, animatingIconState);
+            final boolean direction = currentIconState == animationState.getFirstState();
+            final float from = direction ? TRANSFORMATION_START : TRANSFORMATION_MID;
+            final long update = PackedState.pack(currentIconState, animatingIconState, animationState, true, from);
+
+            if (state.compareAndSet(current, update)) {
+                transformation.run(from, direction ? TRANSFORMATION_MID : TRANSFORMATION_END, 0);
+                break;
+            }
+        }
+
+        invalidate();
     }
 
     @Override public void stop() {
-        if (isRunning() && transformation.isRunning()) {
-            transformation.end();
-        } else {
-            transformationRunning = false;
-            invalidateSelf();
+        clearPendingIconState();
+        if (!FrameClock.isMainThread()) {
+            // settle right away, the driver is stopped on the main thread
+            finishTransformation();
+            return;
+        }
+
+        if (!transformation.end()) {
+            while (true) {
+                final long current = state.get();
+                if (state.compareAndSet(current, PackedState.withRunning(current, false))) break;
+            }
+            invalidate();
         }
     }
 
     @Override public boolean isRunning() {
-        return transformationRunning;
+        return PackedState.isRunning(state.get());
     }
 
     @Override public int getIntrinsicWidth() {
-        return width;
+        return spec.width;
     }
 
     @Override public int getIntrinsicHeight() {
-        return height;
+        return spec.height;
     }
 
     @Override public ConstantState getConstantState() {
@@ -836,12 +1235,18 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
 
         @Override public Drawable newDrawable() {
             MaterialMenuDrawable drawable = new MaterialMenuDrawable(
-                circlePaint.getColor(), stroke, transformation.getDuration(),
-                width, height, iconWidth, circleRadius, strokeWidth, dip1
+                circlePaint.getColor(), transformation.getDuration(), spec
+            );
+            final long current = state.get();
+            final IconState animatingIconState = PackedState.animatingIconState(current);
+            drawable.setIconState(
+                animatingIconState != null ? animatingIconState : PackedState.currentIconState(current)
             );
-            drawable.setIconState(animatingIconState != null ? animatingIconState : currentIconState);
             drawable.setVisible(visible);
             drawable.setRTLEnabled(rtlEnabled);
+            drawable.setRestStateCacheEnabled(restStateCacheEnabled);
+            drawable.setRenderMode(renderMode);
+            drawable.setTransformationSteps(transformationSteps);
             return drawable;
         }
 
@@ -850,6 +1255,27 @@ public class MaterialMenuDrawable extends Drawable implements MaterialMenu, Anim
         }
     }
 
+    /**
+     * @return transition in which given icon is drawn when no animation is running
+     */
+    static AnimationState restAnimationState(IconState iconState) {
+        switch (iconState) {
+            case X:
+                return AnimationState.BURGER_X;
+            case CHECK:
+                return AnimationState.BURGER_CHECK;
+            default:
+                return AnimationState.BURGER_ARROW;
+        }
+    }
+
+    /**
+     * @return transformation offset at which given icon is drawn in its {@link #restAnimationState(IconState)}
+     */
+    static float restTransformationValue(IconState iconState) {
+        return iconState == IconState.BURGER ? TRANSFORMATION_START : TRANSFORMATION_MID;
+    }
+
     static float dpToPx(Resources resources, float dp) {
         return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dp, resources.getDisplayMetrics());
     }
@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.animation.Animator.AnimatorListener;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.view.animation.Interpolator;
+
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.util.Locale;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.AnimationState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.DEFAULT_SCALE;
+import static com.balysv.materialmenu.MaterialMenuDrawable.DEFAULT_TRANSFORM_DURATION;
+import static com.balysv.materialmenu.MaterialMenuDrawable.DEFAULT_VISIBLE;
+import static com.balysv.materialmenu.MaterialMenuDrawable.IconState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.Stroke;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_END;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_MID;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_START;
+
+/**
+ * Draws and morphs icons of a {@link MaterialMenuIconGraph}. States that are not connected
+ * directly are animated along the shortest route of the graph, one transition at a time.
+ * <p/>
+ * Transformations are driven the same way as in {@link MaterialMenuDrawable}, including
+ * springs, vsync stepping and metrics. As a {@link MaterialMenu}, each {@link IconState}
+ * stands for the graph state of the same name in lower case, such as {@code "burger"}, so the
+ * drawable can be driven by a {@link MaterialMenuAnimationGroup} or by drawer offsets.
+ * Must be used from the main thread.
+ */
+public class MaterialMenuGraphDrawable extends Drawable implements MaterialMenu, Animatable {
+
+    private final MaterialMenuIconGraph graph;
+    private final GeometrySpec          spec;
+    private final Paint                 iconPaint = new Paint();
+
+    private final float[] frame = new float[TransitionTable.FRAME_SIZE];
+    private final float[] lines = new float[TransitionTable.LINES_SIZE];
+    private final float[] batch = new float[TransitionTable.LINE_COUNT * 4];
+
+    // transition being drawn, from rest when both states are the same, and the state it eventually has to arrive at
+    private int   fromState;
+    private int   toState;
+    private int   targetState;
+    private float fraction;
+
+    private final TransformationDriver.Target transformationTarget = new TransformationDriver.Target() {
+        @Override public void onTransformationUpdate(float value) {
+            fraction = Math.max(0, Math.min(1, value));
+            invalidateSelf();
+        }
+
+        @Override public void onTransformationEnd() {
+            finishTransition();
+        }
+
+        @Override public void onFrameBudgetExceeded() {
+            // lines are the only render mode of graph icons
+        }
+    };
+
+    private final TransformationDriver transformation;
+
+    private boolean visible = DEFAULT_VISIBLE;
+    private boolean rtlEnabled;
+
+    public MaterialMenuGraphDrawable(Context context, MaterialMenuIconGraph graph, int color, Stroke stroke) {
+        this(context, graph, color, stroke, DEFAULT_SCALE, DEFAULT_TRANSFORM_DURATION);
+    }
+
+    public MaterialMenuGraphDrawable(
+        Context context, MaterialMenuIconGraph graph, int color, Stroke stroke, int scale, int transformDuration
+    ) {
+        this.graph = graph;
+        this.spec = GeometrySpec.obtain(context.getResources(), scale, stroke);
+        this.transformation = new TransformationDriver(transformationTarget, transformDuration);
+
+        MaterialMenuDrawable.initIconPaint(iconPaint, spec, color);
+        setBounds(0, 0, spec.width, spec.height);
+    }
+
+    /*
+     * Drawing
+     */
+
+    @Override public void draw(Canvas canvas) {
+        final MaterialMenuMetrics metrics = transformation.getMetrics();
+        if (metrics == null) {
+            drawFrame(canvas);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        drawFrame(canvas);
+        metrics.recordDraw(System.nanoTime() - start);
+    }
+
+    private void drawFrame(Canvas canvas) {
+        if (!visible) return;
+
+        graph.sampleLines(fromState, toState, fraction, spec.dip1, rtlEnabled, frame, lines);
+
+        final Rect bounds = getBounds();
+        final int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        MaterialMenuDrawable.drawLines(canvas, lines, batch, iconPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override public void setAlpha(int alpha) {
+        iconPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override public void setColorFilter(ColorFilter cf) {
+        iconPaint.setColorFilter(cf);
+        invalidateSelf();
+    }
+
+    @Override public int getOpacity() {
+        return PixelFormat.TRANSPARENT;
+    }
+
+    @Override public int getIntrinsicWidth() {
+        return spec.width;
+    }
+
+    @Override public int getIntrinsicHeight() {
+        return spec.height;
+    }
+
+    /*
+     * Accessor methods
+     */
+
+    public MaterialMenuIconGraph getIconGraph() {
+        return graph;
+    }
+
+    public void setColor(int color) {
+        iconPaint.setColor(color);
+        invalidateSelf();
+    }
+
+    public void setVisible(boolean visible) {
+        if (this.visible == visible) return;
+
+        this.visible = visible;
+        invalidateSelf();
+    }
+
+    public void setTransformationDuration(int duration) {
+        transformation.setDuration(duration);
+    }
+
+    public void setInterpolator(Interpolator interpolator) {
+        transformation.setInterpolator(interpolator);
+    }
+
+    /**
+     * Drive transformations with a damped spring instead of a fixed duration and interpolator.
+     * Animation listener is not notified of spring transformations.
+     *
+     * @param stiffness    spring stiffness, 0 to go back to duration based transformations
+     * @param dampingRatio 1 for no overshoot, less than 1 to bounce around the target
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        transformation.setSpring(stiffness, dampingRatio);
+    }
+
+    /**
+     * Step duration based transformations from display frame times instead of the animator,
+     * see {@link MaterialMenuDrawable#setVsyncAnimationEnabled(boolean)}
+     *
+     * @param enabled true to step transformations on vsync
+     */
+    public void setVsyncAnimationEnabled(boolean enabled) {
+        transformation.setVsyncAnimationEnabled(enabled);
+    }
+
+    /**
+     * Record drawing and transformation performance into given metrics
+     *
+     * @param metrics metrics to record into, or null to stop recording
+     */
+    public void setMetrics(MaterialMenuMetrics metrics) {
+        transformation.setMetrics(metrics);
+    }
+
+    public MaterialMenuMetrics getMetrics() {
+        return transformation.getMetrics();
+    }
+
+    public void setAnimationListener(AnimatorListener listener) {
+        transformation.setAnimationListener(listener);
+    }
+
+    public void setRTLEnabled(boolean rtlEnabled) {
+        this.rtlEnabled = rtlEnabled;
+        invalidateSelf();
+    }
+
+    /**
+     * @return state the icon rests in, or is animating to
+     */
+    public String getIconStateName() {
+        return graph.getStateName(targetState);
+    }
+
+    /**
+     * @return built-in icon state named like the state the icon rests in or is animating to,
+     * or null when that graph state has no built-in counterpart
+     */
+    public IconState getIconState() {
+        final String name = getIconStateName();
+        for (IconState iconState : IconState.values()) {
+            if (nameOf(iconState).equals(name)) return iconState;
+        }
+        return null;
+    }
+
+    public void setIconState(IconState iconState) {
+        setIconState(nameOf(iconState));
+    }
+
+    public void setIconState(String name) {
+        final int state = requireState(name);
+        transformation.cancel();
+        fromState = toState = targetState = state;
+        fraction = 0;
+        invalidateSelf();
+    }
+
+    public void animateIconState(IconState iconState) {
+        animateIconState(nameOf(iconState));
+    }
+
+    /**
+     * Animate to given state, through intermediate states when there is no direct transition.
+     * A running transition is reversed in place or finished before heading for the new state.
+     *
+     * @throws IllegalStateException when the graph has no route to given state
+     */
+    public void animateIconState(String name) {
+        final int state = requireState(name);
+        final MaterialMenuMetrics metrics = transformation.getMetrics();
+        if (metrics != null && isRunning() && state != targetState) {
+            metrics.recordInterruption();
+        }
+
+        if (fromState == toState) {
+            if (state == fromState) return;
+            targetState = requireRoute(fromState, state);
+            startTransition(graph.nextState(fromState, state));
+        } else if (state == fromState) {
+            // turn around from the current shape, the offset runs the other way in the reversed transition
+            final int to = fromState;
+            fromState = toState;
+            toState = to;
+            targetState = state;
+            fraction = 1 - fraction;
+            transformation.run(fraction, 1, -transformation.getVelocity());
+        } else {
+            // continued from the end of the current transition
+            targetState = requireRoute(toState, state);
+            if (!isRunning()) {
+                transformation.run(fraction, 1, 0);
+            }
+        }
+    }
+
+    /**
+     * Set the transition between the graph states named like the two icon states of given
+     * animation state, as {@link MaterialMenuDrawable#setTransformationOffset} does
+     *
+     * @throws IllegalStateException when the graph does not connect the two states directly
+     */
+    public IconState setTransformationOffset(AnimationState animationState, float value) {
+        if (value < TRANSFORMATION_START || value > TRANSFORMATION_END) {
+            throw new IllegalArgumentException(
+                String.format("Value must be between %s and %s", TRANSFORMATION_START, TRANSFORMATION_END)
+            );
+        }
+
+        final int first = requireState(nameOf(animationState.getFirstState()));
+        final int second = requireState(nameOf(animationState.getSecondState()));
+        if (!graph.isConnected(first, second)) {
+            throw new IllegalStateException(
+                String.format("Animating from %s to %s is not supported", graph.getStateName(first), graph.getStateName(second))
+            );
+        }
+
+        transformation.cancel();
+        final boolean forward = value <= TRANSFORMATION_MID;
+        fromState = forward ? first : second;
+        toState = forward ? second : first;
+        fraction = forward ? value : value - TRANSFORMATION_MID;
+        // both ends of a transition are states at rest
+        if (fraction == 1) {
+            fromState = toState;
+            fraction = 0;
+        }
+        if (fraction == 0) {
+            toState = fromState;
+        }
+        targetState = fromState;
+        invalidateSelf();
+
+        return fromState == first ? animationState.getFirstState() : animationState.getSecondState();
+    }
+
+    /*
+     * Animations
+     */
+
+    @Override public void start() {
+        if (isRunning()) return;
+
+        if (fromState != toState) {
+            // carry on with a transition left mid-way by an offset
+            transformation.run(fraction, 1, 0);
+        } else if (fromState != targetState) {
+            startTransition(graph.nextState(fromState, targetState));
+        }
+    }
+
+    @Override public void stop() {
+        if (isRunning()) {
+            targetState = toState;
+            transformation.end();
+        }
+    }
+
+    @Override public boolean isRunning() {
+        return transformation.isRunning();
+    }
+
+    private void startTransition(int to) {
+        toState = to;
+        fraction = 0;
+        transformation.run(0, 1, 0);
+    }
+
+    private void finishTransition() {
+        fromState = toState;
+        fraction = 0;
+        if (fromState != targetState) {
+            // next step along the route
+            startTransition(graph.nextState(fromState, targetState));
+        } else {
+            invalidateSelf();
+        }
+    }
+
+    private int requireState(String name) {
+        final int state = graph.indexOf(name);
+        if (state == MaterialMenuIconGraph.NO_STATE) {
+            throw new IllegalArgumentException(String.format("State %s is not defined", name));
+        }
+        return state;
+    }
+
+    private int requireRoute(int from, int to) {
+        if (graph.nextState(from, to) == MaterialMenuIconGraph.NO_STATE) {
+            throw new IllegalStateException(
+                String.format("Animating from %s to %s is not supported", graph.getStateName(from), graph.getStateName(to))
+            );
+        }
+        return to;
+    }
+
+    /**
+     * @return name of the graph state standing for given icon state
+     */
+    private static String nameOf(IconState iconState) {
+        return iconState.name().toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable graph of icon states drawn with the same three line model as
+ * {@link MaterialMenuDrawable}, for icons beyond the built-in {@link MaterialMenuDrawable.IconState}s.
+ * <p/>
+ * States are sets of up to three lines in dip, laid out in the 40x40 dip drawable area.
+ * Transitions turn every line about its center while moving and resizing it, fade its
+ * alpha, and may spin the whole icon on the way. They are compiled into the
+ * {@link TransitionTable} line parameters the built-in icons are sampled from. Transitions
+ * and shortest routes between states that are not directly connected are resolved into
+ * lookup tables once, when the graph is built.
+ * <p/>
+ * <pre>
+ * MaterialMenuIconGraph graph = new MaterialMenuIconGraph.Builder()
+ *     .addState("plus", 20, 12, 20, 28, 12, 20, 28, 20)
+ *     .addState("minus", 12, 20, 28, 20)
+ *     .addState("play", 15, 12, 15, 28, 15, 12, 29, 20, 15, 28, 29, 20)
+ *     .addTransition("plus", "minus", 90)
+ *     .addTransition("minus", "play")
+ *     .build();
+ * </pre>
+ */
+public final class MaterialMenuIconGraph {
+
+    static final int NO_STATE = -1;
+
+    private static final int   BASE_SIZE   = 40;
+    private static final float BASE_CENTER = BASE_SIZE / 2f;
+
+    // line parameters are linear in the fraction, so both ends describe a transition exactly
+    private static final int KEYFRAME_COUNT = 2;
+    private static final int FRAMES_SIZE    = KEYFRAME_COUNT * TransitionTable.FRAME_SIZE;
+
+    private final String[]             names;
+    private final Map<String, Integer> indices;
+
+    // per state lines in dip, TransitionTable line layout
+    private final float[] stateLines;
+    // per directed transition keyframes of line parameters in dip, TransitionTable frame layout
+    private final float[] transitionFrames;
+
+    // from * count + to, NO_STATE when not connected
+    private final int[] transitions;
+    private final int[] nextHops;
+
+    private MaterialMenuIconGraph(
+        String[] names, float[] stateLines, float[] transitionFrames, int[] transitions, int[] nextHops
+    ) {
+        this.names = names;
+        this.stateLines = stateLines;
+        this.transitionFrames = transitionFrames;
+        this.transitions = transitions;
+        this.nextHops = nextHops;
+
+        indices = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            indices.put(names[i], i);
+        }
+    }
+
+    private static MaterialMenuIconGraph compile(Builder builder) {
+        final int count = builder.names.size();
+
+        final float[] stateLines = new float[count * TransitionTable.LINES_SIZE];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(builder.lines.get(i), 0, stateLines, i * TransitionTable.LINES_SIZE, TransitionTable.LINES_SIZE);
+        }
+
+        final int edgeCount = builder.edges.size() / 2;
+        final int[] transitions = new int[count * count];
+        Arrays.fill(transitions, NO_STATE);
+        final float[] transitionFrames = new float[edgeCount * 2 * FRAMES_SIZE];
+
+        for (int i = 0; i < edgeCount; i++) {
+            final int first = builder.edges.get(i * 2);
+            final int second = builder.edges.get(i * 2 + 1);
+            final float rotation = builder.rotations.get(i);
+            compileTransition(i * 2, first, second, rotation, count, stateLines, transitions, transitionFrames);
+            compileTransition(i * 2 + 1, second, first, -rotation, count, stateLines, transitions, transitionFrames);
+        }
+
+        return new MaterialMenuIconGraph(
+            builder.names.toArray(new String[count]), stateLines, transitionFrames,
+            transitions, resolveRoutes(transitions, count)
+        );
+    }
+
+    private static void compileTransition(
+        int transition, int from, int to, float rotation, int count,
+        float[] stateLines, int[] transitions, float[] transitionFrames
+    ) {
+        transitions[from * count + to] = transition;
+
+        // target lines turned back by the spin, so the spin ends on the target
+        final double radians = Math.toRadians(-rotation);
+        final float cos = (float) Math.cos(radians);
+        final float sin = (float) Math.sin(radians);
+        final float[] target = new float[TransitionTable.LINE_STRIDE];
+
+        for (int line = 0; line < TransitionTable.LINE_COUNT; line++) {
+            final int offset = line * TransitionTable.LINE_STRIDE;
+            rotate(stateLines, to * TransitionTable.LINES_SIZE + offset, target, 0, cos, sin);
+            compileLine(
+                stateLines, from * TransitionTable.LINES_SIZE + offset, target, rotation,
+                transitionFrames, transition * FRAMES_SIZE + line * TransitionTable.PARAM_COUNT
+            );
+        }
+    }
+
+    /**
+     * Describe the morph of one line with the parameters of {@link TransitionTable}: the line
+     * turns about its center the shorter way, while its center and length move linearly and
+     * the whole icon spins about its center. Lines keep their length on the way, where moving
+     * end points linearly would shrink a turning line through the middle.
+     */
+    private static void compileLine(
+        float[] source, int from, float[] target, float rotation, float[] frames, int offset
+    ) {
+        final float sourceLength = length(source, from);
+        final float targetLength = length(target, 0);
+        // a hidden line has no direction of its own, it grows out of the center along the other one
+        final float startAngle = sourceLength > 0 ? angle(source, from) : angle(target, 0);
+        final float endAngle = targetLength > 0 ? angle(target, 0) : startAngle;
+
+        // lines look the same both ways round, so no turn needs to be more than a quarter
+        float turn = (endAngle - startAngle) % 180;
+        if (turn > 90) {
+            turn -= 180;
+        } else if (turn < -90) {
+            turn += 180;
+        }
+
+        writeKeyframe(source, from, startAngle, sourceLength, 0, 0, frames, offset);
+        writeKeyframe(target, 0, startAngle, targetLength, turn, rotation, frames, offset + TransitionTable.FRAME_SIZE);
+    }
+
+    private static void writeKeyframe(
+        float[] line, int from, float angle, float length, float turn, float rotation, float[] frames, int offset
+    ) {
+        final float centerX = (line[from + TransitionTable.LINE_START_X] + line[from + TransitionTable.LINE_STOP_X]) / 2;
+        final float centerY = (line[from + TransitionTable.LINE_START_Y] + line[from + TransitionTable.LINE_STOP_Y]) / 2;
+        final double radians = Math.toRadians(angle);
+        final float halfX = (float) (Math.cos(radians) * length / 2);
+        final float halfY = (float) (Math.sin(radians) * length / 2);
+
+        frames[offset + TransitionTable.ROTATION] = rotation;
+        frames[offset + TransitionTable.PIVOT_X] = BASE_CENTER;
+        frames[offset + TransitionTable.PIVOT_Y] = BASE_CENTER;
+        frames[offset + TransitionTable.ROTATION_2] = turn;
+        frames[offset + TransitionTable.PIVOT_X_2] = centerX;
+        frames[offset + TransitionTable.PIVOT_Y_2] = centerY;
+        frames[offset + TransitionTable.START_X] = centerX - halfX;
+        frames[offset + TransitionTable.START_Y] = centerY - halfY;
+        frames[offset + TransitionTable.STOP_X] = centerX + halfX;
+        frames[offset + TransitionTable.STOP_Y] = centerY + halfY;
+        frames[offset + TransitionTable.ALPHA] = line[from + TransitionTable.LINE_ALPHA];
+    }
+
+    private static float length(float[] line, int from) {
+        return (float) Math.hypot(
+            line[from + TransitionTable.LINE_STOP_X] - line[from + TransitionTable.LINE_START_X],
+            line[from + TransitionTable.LINE_STOP_Y] - line[from + TransitionTable.LINE_START_Y]
+        );
+    }
+
+    /**
+     * @return direction of the line in degrees, clockwise from the x axis as canvas rotations are
+     */
+    private static float angle(float[] line, int from) {
+        return (float) Math.toDegrees(Math.atan2(
+            line[from + TransitionTable.LINE_STOP_Y] - line[from + TransitionTable.LINE_START_Y],
+            line[from + TransitionTable.LINE_STOP_X] - line[from + TransitionTable.LINE_START_X]
+        ));
+    }
+
+    /**
+     * Breadth first search from every state, storing the first step of the shortest route to it
+     */
+    private static int[] resolveRoutes(int[] transitions, int count) {
+        final int[] hops = new int[count * count];
+        Arrays.fill(hops, NO_STATE);
+
+        final int[] queue = new int[count];
+        for (int target = 0; target < count; target++) {
+            hops[target * count + target] = target;
+            int head = 0, tail = 0;
+            queue[tail++] = target;
+            while (head < tail) {
+                final int state = queue[head++];
+                for (int neighbour = 0; neighbour < count; neighbour++) {
+                    if (transitions[neighbour * count + state] == NO_STATE) continue;
+                    if (hops[neighbour * count + target] != NO_STATE) continue;
+
+                    // reaching target from neighbour starts with the step towards the state it was found from
+                    hops[neighbour * count + target] = state;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * Write the compiled graph, readable back with {@link #read(ByteBuffer)} without resolving it again
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            out.writeInt(name.length());
+            out.writeChars(name);
+        }
+        writeFloats(out, stateLines);
+        writeFloats(out, transitionFrames);
+        writeInts(out, transitions);
+        writeInts(out, nextHops);
+    }
+
+    /**
+     * Read a graph written with {@link #write(DataOutputStream)}, checking every length and
+     * index against the data, so a corrupt file fails here instead of while drawing
+     *
+     * @throws IOException if the data does not describe a valid graph
+     */
+    static MaterialMenuIconGraph read(ByteBuffer in) throws IOException {
+        final String[] names = new String[readLength(in, 4)];
+        if (names.length == 0) {
+            throw new IOException("Icon graph has no states");
+        }
+        for (int i = 0; i < names.length; i++) {
+            final char[] name = new char[readLength(in, 2)];
+            in.asCharBuffer().get(name);
+            in.position(in.position() + name.length * 2);
+            names[i] = new String(name);
+        }
+
+        final int count = names.length;
+        final float[] stateLines = readFloats(in);
+        final float[] transitionFrames = readFloats(in);
+        final int[] transitions = readInts(in);
+        final int[] nextHops = readInts(in);
+
+        final int transitionCount = transitionFrames.length / FRAMES_SIZE;
+        if (stateLines.length != count * TransitionTable.LINES_SIZE
+            || transitionFrames.length != transitionCount * FRAMES_SIZE
+            || transitions.length != (long) count * count
+            || nextHops.length != (long) count * count
+            || !inRange(transitions, transitionCount)
+            || !inRange(nextHops, count)
+            || in.hasRemaining()) {
+            throw new IOException("Corrupt icon graph");
+        }
+        // every route has to start with a transition the graph can draw
+        for (int from = 0; from < count; from++) {
+            for (int to = 0; to < count; to++) {
+                final int hop = nextHops[from * count + to];
+                if (from == to ? hop != to : hop != NO_STATE && transitions[from * count + hop] == NO_STATE) {
+                    throw new IOException("Corrupt icon graph routes");
+                }
+            }
+        }
+
+        final MaterialMenuIconGraph graph = new MaterialMenuIconGraph(
+            names, stateLines, transitionFrames, transitions, nextHops
+        );
+        if (graph.indices.size() != count) {
+            throw new IOException("Icon graph has duplicate states");
+        }
+        return graph;
+    }
+
+    /**
+     * @return length read from the data, if that many elements of given size are left to read
+     */
+    private static int readLength(ByteBuffer in, int elementSize) throws IOException {
+        if (in.remaining() < 4) {
+            throw new IOException("Truncated icon graph");
+        }
+        final int length = in.getInt();
+        if (length < 0 || length > in.remaining() / elementSize) {
+            throw new IOException("Corrupt icon graph");
+        }
+        return length;
+    }
+
+    /**
+     * @return whether all values are indices below given count, or {@link #NO_STATE}
+     */
+    private static boolean inRange(int[] values, int count) {
+        for (int value : values) {
+            if (value < NO_STATE || value >= count) return false;
+        }
+        return true;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static float[] readFloats(ByteBuffer in) throws IOException {
+        final float[] values = new float[readLength(in, 4)];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + values.length * 4);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer in) throws IOException {
+        final int[] values = new int[readLength(in, 4)];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * 4);
+        return values;
+    }
+
+    public int getStateCount() {
+        return names.length;
+    }
+
+    public String getStateName(int state) {
+        return names[state];
+    }
+
+    /**
+     * @return index of the named state, or -1 when the graph has no such state
+     */
+    public int indexOf(String name) {
+        final Integer index = indices.get(name);
+        return index == null ? NO_STATE : index;
+    }
+
+    /**
+     * @return whether a transition connects the two states directly
+     */
+    public boolean isConnected(int from, int to) {
+        return transitions[from * names.length + to] != NO_STATE;
+    }
+
+    /**
+     * @return state to animate to first on the shortest route between two states,
+     * the target itself when they are connected directly, or -1 when no route exists
+     */
+    public int nextState(int from, int to) {
+        return nextHops[from * names.length + to];
+    }
+
+    /**
+     * Sample lines of a transition between two directly connected states, or of a state at rest
+     * when both are the same
+     *
+     * @param fraction between 0 and 1
+     * @param dip      pixels per dip, including drawable scale
+     * @param rtl      whether to mirror lines horizontally
+     * @param frame    scratch array of at least {@link TransitionTable#FRAME_SIZE} elements
+     * @param out      receives {@link TransitionTable#LINES_SIZE} values in {@link TransitionTable} line layout
+     */
+    void sampleLines(int from, int to, float fraction, float dip, boolean rtl, float[] frame, float[] out) {
+        if (from == to) {
+            System.arraycopy(stateLines, from * TransitionTable.LINES_SIZE, out, 0, TransitionTable.LINES_SIZE);
+        } else {
+            final int start = transitions[from * names.length + to] * FRAMES_SIZE;
+            final int end = start + TransitionTable.FRAME_SIZE;
+            for (int i = 0; i < TransitionTable.FRAME_SIZE; i++) {
+                frame[i] = transitionFrames[start + i] + (transitionFrames[end + i] - transitionFrames[start + i]) * fraction;
+            }
+            TransitionTable.resolveLines(frame, BASE_SIZE, false, out);
+        }
+
+        final float width = BASE_SIZE * dip;
+        for (int offset = 0; offset < TransitionTable.LINES_SIZE; offset += TransitionTable.LINE_STRIDE) {
+            for (int point = 0; point < 4; point++) {
+                out[offset + point] *= dip;
+            }
+            if (rtl) {
+                out[offset + TransitionTable.LINE_START_X] = width - out[offset + TransitionTable.LINE_START_X];
+                out[offset + TransitionTable.LINE_STOP_X] = width - out[offset + TransitionTable.LINE_STOP_X];
+            }
+        }
+    }
+
+    private static void rotate(float[] source, int from, float[] target, int to, float cos, float sin) {
+        final float startX = source[from + TransitionTable.LINE_START_X] - BASE_CENTER;
+        final float startY = source[from + TransitionTable.LINE_START_Y] - BASE_CENTER;
+        final float stopX = source[from + TransitionTable.LINE_STOP_X] - BASE_CENTER;
+        final float stopY = source[from + TransitionTable.LINE_STOP_Y] - BASE_CENTER;
+        target[to + TransitionTable.LINE_START_X] = BASE_CENTER + startX * cos - startY * sin;
+        target[to + TransitionTable.LINE_START_Y] = BASE_CENTER + startX * sin + startY * cos;
+        target[to + TransitionTable.LINE_STOP_X] = BASE_CENTER + stopX * cos - stopY * sin;
+        target[to + TransitionTable.LINE_STOP_Y] = BASE_CENTER + stopX * sin + stopY * cos;
+        target[to + TransitionTable.LINE_ALPHA] = source[from + TransitionTable.LINE_ALPHA];
+    }
+
+    public static final class Builder {
+
+        private final List<String>         names     = new ArrayList<>();
+        private final Map<String, Integer> indices   = new HashMap<>();
+        private final List<float[]>        lines     = new ArrayList<>();
+        private final List<Integer>        edges     = new ArrayList<>();
+        private final List<Float>          rotations = new ArrayList<>();
+
+        /**
+         * Add a state of one to three lines. Missing lines are hidden, they grow out of
+         * the icon center and fade in when morphing into a state that shows them.
+         *
+         * @param name  unique state name
+         * @param lines start x, start y, stop x and stop y of each line in dip
+         */
+        public Builder addState(String name, float... lines) {
+            if (indices.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("State %s is already defined", name));
+            }
+            if (lines.length == 0 || lines.length % 4 != 0 || lines.length > TransitionTable.LINE_COUNT * 4) {
+                throw new IllegalArgumentException("State must consist of one to three lines of four coordinates");
+            }
+
+            final float[] state = new float[TransitionTable.LINES_SIZE];
+            for (int line = 0; line < TransitionTable.LINE_COUNT; line++) {
+                final int offset = line * TransitionTable.LINE_STRIDE;
+                if (line * 4 < lines.length) {
+                    System.arraycopy(lines, line * 4, state, offset, 4);
+                    state[offset + TransitionTable.LINE_ALPHA] = 255;
+                } else {
+                    Arrays.fill(state, offset, offset + 4, BASE_CENTER);
+                }
+            }
+
+            indices.put(name, names.size());
+            names.add(name);
+            this.lines.add(state);
+            return this;
+        }
+
+        public Builder addTransition(String first, String second) {
+            return addTransition(first, second, 0);
+        }
+
+        /**
+         * Connect two states, the transition is animated both ways
+         *
+         * @param rotation degrees the icon spins clockwise on its way from first to second state
+         */
+        public Builder addTransition(String first, String second, float rotation) {
+            final int from = requireState(first);
+            final int to = requireState(second);
+            if (from == to) {
+                throw new IllegalArgumentException(String.format("State %s can not transition to itself", first));
+            }
+
+            edges.add(from);
+            edges.add(to);
+            rotations.add(rotation);
+            return this;
+        }
+
+        public MaterialMenuIconGraph build() {
+            if (names.isEmpty()) {
+                throw new IllegalStateException("Icon graph must have at least one state");
+            }
+            return compile(this);
+        }
+
+        private int requireState(String name) {
+            final Integer index = indices.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException(String.format("State %s is not defined", name));
+            }
+            return index;
+        }
+    }
+}
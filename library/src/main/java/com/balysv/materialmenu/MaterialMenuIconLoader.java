@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+
+/**
+ * Loads {@link MaterialMenuIconGraph}s declared as JSON in application assets:
+ * <pre>
+ * {
+ *   "states": [
+ *     { "name": "plus",  "lines": [[20, 12, 20, 28], [12, 20, 28, 20]] },
+ *     { "name": "minus", "lines": [[12, 20, 28, 20]] }
+ *   ],
+ *   "transitions": [
+ *     { "from": "plus", "to": "minus", "rotation": 90 }
+ *   ]
+ * }
+ * </pre>
+ * Line coordinates are in dip within the 40x40 dip drawable area, rotation in degrees and optional.
+ * <p/>
+ * The compiled graph is cached as a binary file in the application cache directory and loaded
+ * from it with a single read until the application is updated.
+ */
+public final class MaterialMenuIconLoader {
+
+    private static final int  CACHE_MAGIC   = 0x4d4d4947;
+    private static final int  CACHE_VERSION = 2;
+    private static final int  HEADER_SIZE   = 16;
+    private static final String CACHE_DIR   = "materialmenu";
+
+    private MaterialMenuIconLoader() {
+    }
+
+    /**
+     * Load an icon graph from assets, or from its compiled form cached by a previous call
+     *
+     * @param assetPath path of the JSON definition within assets
+     * @throws IOException if the definition can not be read or is malformed
+     */
+    public static MaterialMenuIconGraph load(Context context, String assetPath) throws IOException {
+        final long version = resolveAppVersion(context);
+        // encoded, so no two asset paths share a cache file
+        final String name = URLEncoder.encode(assetPath, "UTF-8");
+        final File cache = new File(new File(context.getCacheDir(), CACHE_DIR), name + ".bin");
+
+        final MaterialMenuIconGraph cached = readCache(cache, version);
+        if (cached != null) return cached;
+
+        final MaterialMenuIconGraph graph;
+        final InputStream in = context.getAssets().open(assetPath);
+        try {
+            graph = parse(new String(readFully(in), "UTF-8"));
+        } finally {
+            in.close();
+        }
+
+        writeCache(cache, version, graph);
+        return graph;
+    }
+
+    /**
+     * Compile a JSON icon definition
+     *
+     * @throws IOException if the definition is malformed
+     */
+    public static MaterialMenuIconGraph parse(String json) throws IOException {
+        try {
+            final JSONObject definition = new JSONObject(json);
+            final MaterialMenuIconGraph.Builder builder = new MaterialMenuIconGraph.Builder();
+
+            final JSONArray states = definition.getJSONArray("states");
+            for (int i = 0; i < states.length(); i++) {
+                final JSONObject state = states.getJSONObject(i);
+                final JSONArray lines = state.getJSONArray("lines");
+                final float[] coordinates = new float[lines.length() * 4];
+                for (int line = 0; line < lines.length(); line++) {
+                    final JSONArray points = lines.getJSONArray(line);
+                    if (points.length() != 4) {
+                        throw new IOException("Line must have four coordinates");
+                    }
+                    for (int point = 0; point < 4; point++) {
+                        coordinates[line * 4 + point] = (float) points.getDouble(point);
+                    }
+                }
+                builder.addState(state.getString("name"), coordinates);
+            }
+
+            final JSONArray transitions = definition.optJSONArray("transitions");
+            for (int i = 0; transitions != null && i < transitions.length(); i++) {
+                final JSONObject transition = transitions.getJSONObject(i);
+                builder.addTransition(
+                    transition.getString("from"),
+                    transition.getString("to"),
+                    (float) transition.optDouble("rotation", 0)
+                );
+            }
+
+            return builder.build();
+        } catch (JSONException | IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("Malformed icon definition", e);
+        }
+    }
+
+    private static MaterialMenuIconGraph readCache(File cache, long version) {
+        if (!cache.isFile()) return null;
+
+        try {
+            final byte[] data = new byte[(int) cache.length()];
+            final FileInputStream in = new FileInputStream(cache);
+            try {
+                int read = 0;
+                while (read < data.length) {
+                    final int count = in.read(data, read, data.length - read);
+                    if (count < 0) return null;
+                    read += count;
+                }
+            } finally {
+                in.close();
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (data.length < HEADER_SIZE
+                || buffer.getInt() != CACHE_MAGIC
+                || buffer.getInt() != CACHE_VERSION
+                || buffer.getLong() != version) {
+                return null;
+            }
+            return MaterialMenuIconGraph.read(buffer);
+        } catch (IOException | RuntimeException e) {
+            // corrupt or unreadable cache is compiled again
+            return null;
+        }
+    }
+
+    private static void writeCache(File cache, long version, MaterialMenuIconGraph graph) {
+        final File directory = cache.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        // write aside and move in place, so readers never see a partial file
+        final File temp = new File(directory, cache.getName() + ".tmp");
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(version);
+                graph.write(out);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(cache)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            // caching is an optimisation only
+            temp.delete();
+        }
+    }
+
+    /**
+     * @return time the application was last updated, assets can not change without it
+     */
+    private static long resolveAppVersion(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
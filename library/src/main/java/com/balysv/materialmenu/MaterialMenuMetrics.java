@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in counters of drawing and transformation performance, shared by any number of
+ * drawables set up with {@link MaterialMenuDrawable#setMetrics(MaterialMenuMetrics)}.
+ * Counters are updated without locking and may be polled from any thread.
+ * <p/>
+ * Frames are considered late when they arrive more than one and a half 60 fps frame
+ * intervals after the previous one.
+ */
+public class MaterialMenuMetrics {
+
+    /**
+     * Number of draw duration histogram buckets. Bucket 0 counts draws under 1 microsecond,
+     * bucket {@code i} draws under {@code 2^i} microseconds and the last one all slower draws.
+     */
+    public static final int DRAW_TIME_BUCKETS = 16;
+
+    static final long FRAME_INTERVAL_NANOS = 16666667;
+
+    private static final long LATE_FRAME_NANOS = FRAME_INTERVAL_NANOS * 3 / 2;
+
+    private final AtomicLong      drawCount     = new AtomicLong();
+    private final AtomicLong      drawTimeNanos = new AtomicLong();
+    private final AtomicLongArray drawTimes     = new AtomicLongArray(DRAW_TIME_BUCKETS);
+
+    private final AtomicLong transitionCount     = new AtomicLong();
+    private final AtomicLong transitionFrames    = new AtomicLong();
+    private final AtomicLong lateFrames          = new AtomicLong();
+    private final AtomicLong droppedFrames       = new AtomicLong();
+    private final AtomicLong overrunTransitions  = new AtomicLong();
+    private final AtomicLong interruptedAnimates = new AtomicLong();
+
+    void recordDraw(long nanos) {
+        drawCount.incrementAndGet();
+        drawTimeNanos.addAndGet(nanos);
+
+        final long micros = nanos / 1000;
+        final int bucket = Math.min(DRAW_TIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        drawTimes.incrementAndGet(bucket);
+    }
+
+    /**
+     * @param nanos time since the previous frame of the same transformation
+     */
+    void recordFrameInterval(long nanos) {
+        if (nanos > LATE_FRAME_NANOS) {
+            lateFrames.incrementAndGet();
+            droppedFrames.addAndGet(Math.round((double) nanos / FRAME_INTERVAL_NANOS) - 1);
+        }
+    }
+
+    /**
+     * @param frames         frames the transformation was animated with
+     * @param elapsedNanos   time from the first to the last frame
+     * @param plannedNanos   duration the transformation was set up with, 0 when it has none
+     */
+    void recordTransition(int frames, long elapsedNanos, long plannedNanos) {
+        transitionCount.incrementAndGet();
+        transitionFrames.addAndGet(frames);
+        if (plannedNanos > 0 && elapsedNanos > plannedNanos + FRAME_INTERVAL_NANOS) {
+            overrunTransitions.incrementAndGet();
+        }
+    }
+
+    void recordInterruption() {
+        interruptedAnimates.incrementAndGet();
+    }
+
+    public long getDrawCount() {
+        return drawCount.get();
+    }
+
+    public long getDrawTimeNanos() {
+        return drawTimeNanos.get();
+    }
+
+    /**
+     * @param bucket between 0 and {@link #DRAW_TIME_BUCKETS} - 1
+     * @return number of draws which took time in range of given bucket
+     */
+    public long getDrawTimeBucket(int bucket) {
+        return drawTimes.get(bucket);
+    }
+
+    /**
+     * @return completed transformations
+     */
+    public long getTransitionCount() {
+        return transitionCount.get();
+    }
+
+    /**
+     * @return frames of all completed transformations, divide by {@link #getTransitionCount()} for frames per transition
+     */
+    public long getTransitionFrameCount() {
+        return transitionFrames.get();
+    }
+
+    public long getLateFrameCount() {
+        return lateFrames.get();
+    }
+
+    /**
+     * @return 60 fps frames skipped by late frames
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return transformations which took more than a frame longer than their duration
+     */
+    public long getOverrunTransitionCount() {
+        return overrunTransitions.get();
+    }
+
+    /**
+     * @return calls to {@code animateIconState} that changed the target of a running transformation
+     */
+    public long getInterruptedTransitionCount() {
+        return interruptedAnimates.get();
+    }
+
+    public void reset() {
+        drawCount.set(0);
+        drawTimeNanos.set(0);
+        for (int i = 0; i < DRAW_TIME_BUCKETS; i++) {
+            drawTimes.set(i, 0);
+        }
+        transitionCount.set(0);
+        transitionFrames.set(0);
+        lateFrames.set(0);
+        droppedFrames.set(0);
+        overrunTransitions.set(0);
+        interruptedAnimates.set(0);
+    }
+}
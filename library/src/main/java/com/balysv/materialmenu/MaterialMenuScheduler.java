@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import java.util.ArrayList;
+
+/**
+ * Steps every frame driven {@link MaterialMenuDrawable} transformation, spring or vsync
+ * based, and every {@link MaterialMenuAnimationGroup} from one display frame callback using
+ * the frame's vsync time. Also watches frame intervals, so drawables can fall back to a
+ * cheaper render mode when frames are being missed.
+ * <p/>
+ * Must be used from the main thread.
+ */
+public final class MaterialMenuScheduler {
+
+    // last frames, most recent in the lowest bit, set when the frame came late
+    private static final int HISTORY_MASK   = 0xf;
+    private static final int MISSED_TO_FAIL = 2;
+
+    interface Stepper {
+        /**
+         * @param frameTimeNanos vsync time of the frame
+         * @param overBudget     whether frames are being missed
+         * @return whether the next frame is needed too
+         */
+        boolean onFrame(long frameTimeNanos, boolean overBudget);
+    }
+
+    private static final ArrayList<Stepper> ACTIVE = new ArrayList<>();
+
+    private static final FrameClock.Callback CALLBACK = new FrameClock.Callback() {
+        @Override public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+        }
+    };
+
+    private static long frameBudget = MaterialMenuMetrics.FRAME_INTERVAL_NANOS;
+    private static long lastFrameTime = -1;
+    private static int  missedHistory;
+    private static long missedFrames;
+
+    private MaterialMenuScheduler() {
+    }
+
+    /**
+     * @param nanos expected interval between frames, one 60 fps frame by default
+     */
+    public static void setFrameBudget(long nanos) {
+        if (nanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive");
+        }
+        frameBudget = nanos;
+    }
+
+    /**
+     * @return whether several of the last frames arrived later than the frame budget allows
+     */
+    public static boolean isOverBudget() {
+        return Integer.bitCount(missedHistory) >= MISSED_TO_FAIL;
+    }
+
+    /**
+     * @return frames missed while any transformation was running
+     */
+    public static long getMissedFrameCount() {
+        return missedFrames;
+    }
+
+    static void schedule(Stepper stepper) {
+        if (!ACTIVE.contains(stepper)) {
+            ACTIVE.add(stepper);
+        }
+        FrameClock.getInstance().postFrameCallback(CALLBACK);
+    }
+
+    private static void onFrame(long frameTimeNanos) {
+        if (lastFrameTime >= 0) {
+            final boolean missed = frameTimeNanos - lastFrameTime > frameBudget * 3 / 2;
+            missedHistory = (missedHistory << 1 | (missed ? 1 : 0)) & HISTORY_MASK;
+            if (missed) missedFrames++;
+        }
+        lastFrameTime = frameTimeNanos;
+
+        // steppers stopped elsewhere report they are done, and are dropped here
+        final boolean overBudget = isOverBudget();
+        for (int i = ACTIVE.size() - 1; i >= 0; i--) {
+            if (!ACTIVE.get(i).onFrame(frameTimeNanos, overBudget)) {
+                ACTIVE.remove(i);
+            }
+        }
+
+        if (ACTIVE.isEmpty()) {
+            // idle time between transformations is not a missed frame
+            lastFrameTime = -1;
+        } else {
+            FrameClock.getInstance().postFrameCallback(CALLBACK);
+        }
+    }
+}
@@ -43,8 +43,6 @@ public class MaterialMenuView extends View implements MaterialMenu {
 
     private MaterialMenuDrawable drawable;
 
-    private IconState currentState = IconState.BURGER;
-
     public MaterialMenuView(Context context) {
         this(context, null);
     }
@@ -69,7 +67,9 @@ public class MaterialMenuView extends View implements MaterialMenu {
             Stroke stroke = Stroke.valueOf(attr.getInteger(R.styleable.MaterialMenuView_mm_strokeWidth, 0));
             boolean rtlEnabled = attr.getBoolean(R.styleable.MaterialMenuView_mm_rtlEnabled, false);
             int state = attr.getInt(R.styleable.MaterialMenuView_mm_iconState, 0);
+            boolean restStateCache = attr.getBoolean(R.styleable.MaterialMenuView_mm_restStateCache, false);
 
+            IconState currentState = IconState.BURGER;
             switch (state) {
                 case 0:
                     currentState = IconState.BURGER;
@@ -90,6 +90,7 @@ public class MaterialMenuView extends View implements MaterialMenu {
             drawable.setIconState(currentState);
             drawable.setVisible(visible);
             drawable.setRTLEnabled(rtlEnabled);
+            drawable.setRestStateCacheEnabled(restStateCache);
         } finally {
             attr.recycle();
         }
@@ -99,15 +100,8 @@ public class MaterialMenuView extends View implements MaterialMenu {
 
     @Override public void draw(Canvas canvas) {
         super.draw(canvas);
-        if (getPaddingLeft() != 0 || getPaddingTop() != 0) {
-            int saveCount = canvas.getSaveCount();
-            canvas.save();
-            canvas.translate(getPaddingLeft(), getPaddingTop());
-            drawable.draw(canvas);
-            canvas.restoreToCount(saveCount);
-        } else {
-            drawable.draw(canvas);
-        }
+        // drawable bounds are offset by padding, so no canvas transform is recorded
+        drawable.draw(canvas);
     }
 
     @Override public void setPadding(int left, int top, int right, int bottom) {
@@ -120,7 +114,6 @@ public class MaterialMenuView extends View implements MaterialMenu {
     }
 
     @Override public void setIconState(IconState state) {
-        currentState = state;
         drawable.setIconState(state);
     }
 
@@ -129,10 +122,19 @@ public class MaterialMenuView extends View implements MaterialMenu {
     }
 
     @Override public void animateIconState(IconState state) {
-        currentState = state;
         drawable.animateIconState(state);
     }
 
+    /**
+     * Animate icon to given state from any thread, requests made before the next frame are
+     * coalesced to the latest state
+     *
+     * @param state new icon state
+     */
+    public void requestIconState(IconState state) {
+        drawable.requestIconState(state);
+    }
+
     @Override public void setColor(int color) {
         drawable.setColor(color);
     }
@@ -149,6 +151,45 @@ public class MaterialMenuView extends View implements MaterialMenu {
         drawable.setInterpolator(interpolator);
     }
 
+    /**
+     * Animate transformations with a damped spring instead of duration and interpolator
+     *
+     * @param stiffness    spring stiffness, 0 to go back to duration based animations
+     * @param dampingRatio 1 for no overshoot, less than 1 to bounce around the target
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        drawable.setSpring(stiffness, dampingRatio);
+    }
+
+    /**
+     * Snap transformation offsets of the icon to discrete steps, redrawing only when a step changes
+     *
+     * @param steps steps per transformation, 0 to draw every offset
+     */
+    public void setTransformationSteps(int steps) {
+        drawable.setTransformationSteps(steps);
+    }
+
+    /**
+     * Draw the icon at rest as a single shared bitmap, so the display list records one bitmap
+     * draw instead of the lines. The bitmap is not redrawn when the view is scaled.
+     *
+     * @param enabled true to draw icons at rest from cache
+     */
+    public void setRestStateCacheEnabled(boolean enabled) {
+        drawable.setRestStateCacheEnabled(enabled);
+        invalidate();
+    }
+
+    /**
+     * Record drawing and transformation performance of the icon into given metrics
+     *
+     * @param metrics metrics to record into, or null to stop recording
+     */
+    public void setMetrics(MaterialMenuMetrics metrics) {
+        drawable.setMetrics(metrics);
+    }
+
     @Override public void setAnimationListener(Animator.AnimatorListener listener) {
         drawable.setAnimationListener(listener);
     }
@@ -158,8 +199,29 @@ public class MaterialMenuView extends View implements MaterialMenu {
     }
 
     @Override public IconState setTransformationOffset(MaterialMenuDrawable.AnimationState animationState, float value) {
-        currentState = drawable.setTransformationOffset(animationState, value);
-        return currentState;
+        return drawable.setTransformationOffset(animationState, value);
+    }
+
+    /**
+     * Track a transformation value from any thread, i.e. on every navigation drawer slide event.
+     * Only the latest value is kept and applied once per frame.
+     *
+     * @param animationState state to set value in
+     * @param value          between 0 and 2, as in {@link #setTransformationOffset}
+     */
+    public void trackTransformationOffset(MaterialMenuDrawable.AnimationState animationState, float value) {
+        drawable.trackTransformationOffset(animationState, value);
+    }
+
+    /**
+     * Hand a tracked transformation over to an animation towards the closest icon state
+     * in direction of given velocity, i.e. when the user lifts a finger off the drawer
+     *
+     * @param velocity transformation value change per second
+     * @return icon state being animated to
+     */
+    public IconState settleTransformationOffset(float velocity) {
+        return drawable.settleTransformationOffset(velocity);
     }
 
     public MaterialMenuDrawable getDrawable() {
@@ -187,8 +249,9 @@ public class MaterialMenuView extends View implements MaterialMenu {
     @Override public Parcelable onSaveInstanceState() {
         Parcelable superState = super.onSaveInstanceState();
         SavedState savedState = new SavedState(superState);
-        savedState.state = currentState;
-        savedState.visible = drawable != null && drawable.isDrawableVisible();
+        // read from the drawable, offsets tracked on its own frames change the state too
+        savedState.state = drawable.getTargetIconState();
+        savedState.visible = drawable.isDrawableVisible();
         return savedState;
     }
 
@@ -202,9 +265,9 @@ public class MaterialMenuView extends View implements MaterialMenu {
     private void adjustDrawablePadding() {
         if (drawable != null) {
             drawable.setBounds(
-                0, 0,
-                drawable.getIntrinsicWidth() + getPaddingLeft() + getPaddingRight(),
-                drawable.getIntrinsicHeight() + getPaddingTop() + getPaddingBottom()
+                getPaddingLeft(), getPaddingTop(),
+                getPaddingLeft() + drawable.getIntrinsicWidth(),
+                getPaddingTop() + drawable.getIntrinsicHeight()
             );
         }
     }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.AnimationState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.IconState;
+
+/**
+ * Packs the complete state of a {@link MaterialMenuDrawable} into a single {@code long},
+ * so it can be published and read atomically:
+ * <pre>
+ * bits  0..31  transformation value (float bits)
+ * bits 32..33  current icon state
+ * bits 34..36  animating icon state, 0 when none
+ * bits 37..39  animation state
+ * bit  40      transformation running
+ * bits 41..43  icon state to animate to once running transformation ends, 0 when none
+ * </pre>
+ */
+final class PackedState {
+
+    private static final IconState[]      ICON_STATES      = IconState.values();
+    private static final AnimationState[] ANIMATION_STATES = AnimationState.values();
+
+    private static final int CURRENT_SHIFT   = 32;
+    private static final int ANIMATING_SHIFT = 34;
+    private static final int ANIMATION_SHIFT = 37;
+    private static final int RUNNING_SHIFT   = 40;
+    private static final int PENDING_SHIFT   = 41;
+
+    private static final long VALUE_MASK     = 0xffffffffL;
+    private static final long CURRENT_MASK   = 0x3L << CURRENT_SHIFT;
+    private static final long ANIMATING_MASK = 0x7L << ANIMATING_SHIFT;
+    private static final long RUNNING_MASK   = 0x1L << RUNNING_SHIFT;
+    private static final long PENDING_MASK   = 0x7L << PENDING_SHIFT;
+
+    private PackedState() {
+    }
+
+    static long pack(
+        IconState current, IconState animating, AnimationState animationState, boolean running, float value
+    ) {
+        return (Float.floatToIntBits(value) & VALUE_MASK)
+            | (long) current.ordinal() << CURRENT_SHIFT
+            | (long) (animating == null ? 0 : animating.ordinal() + 1) << ANIMATING_SHIFT
+            | (long) animationState.ordinal() << ANIMATION_SHIFT
+            | (running ? RUNNING_MASK : 0);
+    }
+
+    static float transformationValue(long state) {
+        return Float.intBitsToFloat((int) (state & VALUE_MASK));
+    }
+
+    static IconState currentIconState(long state) {
+        return ICON_STATES[(int) ((state & CURRENT_MASK) >>> CURRENT_SHIFT)];
+    }
+
+    static IconState animatingIconState(long state) {
+        final int animating = (int) ((state & ANIMATING_MASK) >>> ANIMATING_SHIFT);
+        return animating == 0 ? null : ICON_STATES[animating - 1];
+    }
+
+    static IconState pendingIconState(long state) {
+        final int pending = (int) ((state & PENDING_MASK) >>> PENDING_SHIFT);
+        return pending == 0 ? null : ICON_STATES[pending - 1];
+    }
+
+    static AnimationState animationState(long state) {
+        return ANIMATION_STATES[(int) ((state >>> ANIMATION_SHIFT) & 0x7L)];
+    }
+
+    static boolean isRunning(long state) {
+        return (state & RUNNING_MASK) != 0;
+    }
+
+    static long withTransformationValue(long state, float value) {
+        return (state & ~VALUE_MASK) | (Float.floatToIntBits(value) & VALUE_MASK);
+    }
+
+    static long withAnimatingIconState(long state, IconState animating) {
+        return (state & ~ANIMATING_MASK) | (long) (animating == null ? 0 : animating.ordinal() + 1) << ANIMATING_SHIFT;
+    }
+
+    static long withPendingIconState(long state, IconState pending) {
+        return (state & ~PENDING_MASK) | (long) (pending == null ? 0 : pending.ordinal() + 1) << PENDING_SHIFT;
+    }
+
+    static long withRunning(long state, boolean running) {
+        return running ? state | RUNNING_MASK : state & ~RUNNING_MASK;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+/**
+ * Damped spring moving a single value towards a target. Integrated with a fixed
+ * time step, so the motion does not depend on how regularly frames arrive.
+ */
+final class Spring {
+
+    /**
+     * Integration step in seconds
+     */
+    private static final float STEP = 1f / 240;
+
+    /**
+     * Longest frame integrated at once. A stalled frame slows the spring down instead of jumping it.
+     */
+    private static final float MAX_FRAME = 1f / 30;
+
+    private static final float REST_DISTANCE = 0.001f;
+    private static final float REST_VELOCITY = 0.01f;
+
+    private float stiffness;
+    private float damping;
+
+    float position;
+    float velocity;
+    float target;
+
+    private float accumulator;
+
+    Spring(float stiffness, float dampingRatio) {
+        configure(stiffness, dampingRatio);
+    }
+
+    void configure(float stiffness, float dampingRatio) {
+        this.stiffness = stiffness;
+        this.damping = (float) (2 * dampingRatio * Math.sqrt(stiffness));
+    }
+
+    void reset(float position, float velocity, float target) {
+        this.position = position;
+        this.velocity = velocity;
+        this.target = target;
+        this.accumulator = 0;
+    }
+
+    /**
+     * Advance the spring by given time, in whole integration steps
+     *
+     * @param seconds time since the previous frame
+     */
+    void advance(float seconds) {
+        accumulator += Math.max(0, Math.min(seconds, MAX_FRAME));
+        while (accumulator >= STEP) {
+            // semi-implicit Euler, stable for the stiffness range a spring icon needs
+            velocity += (stiffness * (target - position) - damping * velocity) * STEP;
+            position += velocity * STEP;
+            accumulator -= STEP;
+        }
+    }
+
+    boolean isAtRest() {
+        return Math.abs(target - position) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY;
+    }
+}
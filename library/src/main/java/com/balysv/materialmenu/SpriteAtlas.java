@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.balysv.materialmenu.core.TransitionTable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.balysv.materialmenu.MaterialMenuDrawable.AnimationState;
+import static com.balysv.materialmenu.MaterialMenuDrawable.TRANSFORMATION_END;
+
+/**
+ * Frames of one transformation rendered into a bitmap at full alpha, sampled evenly over
+ * offsets 0 to 2 and laid out in a square grid. Atlases are rendered on a background thread
+ * and shared through {@link MaterialMenuBitmapCache}.
+ * <p/>
+ * An atlas may take at most a third of the cache budget, so the atlases of all three
+ * transformations out of an icon state fit together. Large icons get fewer frames to fit,
+ * and none when not even three fit.
+ */
+final class SpriteAtlas {
+
+    interface Callback {
+        /**
+         * Called on the main thread once an atlas requested with {@link #render} is ready
+         */
+        void onSpriteAtlasReady(AnimationState animationState, SpriteAtlas atlas);
+    }
+
+    // odd, so offset 1 falls on a frame of its own
+    private static final int MAX_FRAME_COUNT = 25;
+    private static final int MIN_FRAME_COUNT = 3;
+    // transformations out of any icon state, all of them are prepared ahead
+    private static final int PREPARED_COUNT  = 3;
+
+    private static final Handler  MAIN_THREAD = new Handler(Looper.getMainLooper());
+    private static final Executor RENDERER    = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "MaterialMenuSprites");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final Bitmap bitmap;
+    private final int    frameCount;
+    private final int    columns;
+    private final int    width;
+    private final int    height;
+    private final int    color;
+    private final boolean rtl;
+
+    private SpriteAtlas(Bitmap bitmap, int frameCount, GeometrySpec spec, int color, boolean rtl) {
+        this.bitmap = bitmap;
+        this.frameCount = frameCount;
+        this.columns = columns(frameCount);
+        this.width = spec.width;
+        this.height = spec.height;
+        this.color = color;
+        this.rtl = rtl;
+    }
+
+    /**
+     * @return atlas of given transformation from the cache, or null when it has not been rendered
+     */
+    static SpriteAtlas get(GeometrySpec spec, AnimationState animationState, int color, boolean rtl) {
+        final int frameCount = frameCount(spec);
+        if (frameCount == 0) return null;
+
+        final Bitmap bitmap = MaterialMenuBitmapCache.get(spec, animationState, frameCount, color, rtl);
+        return bitmap != null ? new SpriteAtlas(bitmap, frameCount, spec, color, rtl) : null;
+    }
+
+    /**
+     * Render the atlas of given transformation on the background thread, unless it is cached by then
+     *
+     * @param paint paint to draw lines with, copied right away and drawn at full alpha
+     * @return false when icons of this size do not fit an atlas at all
+     */
+    static boolean render(
+        final GeometrySpec spec, final AnimationState animationState, Paint paint, final boolean rtl,
+        final Callback callback
+    ) {
+        final int frameCount = frameCount(spec);
+        if (frameCount == 0) return false;
+
+        final Paint linePaint = new Paint(paint);
+        linePaint.setAlpha(255);
+        RENDERER.execute(new Runnable() {
+            @Override public void run() {
+                final int color = linePaint.getColor();
+                Bitmap bitmap = MaterialMenuBitmapCache.get(spec, animationState, frameCount, color, rtl);
+                if (bitmap == null) {
+                    bitmap = draw(spec, animationState, frameCount, linePaint, rtl);
+                    MaterialMenuBitmapCache.put(spec, animationState, frameCount, color, rtl, bitmap);
+                }
+
+                final SpriteAtlas atlas = new SpriteAtlas(bitmap, frameCount, spec, color, rtl);
+                MAIN_THREAD.post(new Runnable() {
+                    @Override public void run() {
+                        callback.onSpriteAtlasReady(animationState, atlas);
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return whether this atlas was rendered with given opaque color and layout direction
+     */
+    boolean matches(int color, boolean rtl) {
+        return this.color == color && this.rtl == rtl;
+    }
+
+    /**
+     * Draw the frame nearest to given offset. Frames are not blended, two translucent
+     * frames drawn over each other would dim lines where they overlap.
+     *
+     * @param paint paint carrying the alpha to draw the frame at
+     */
+    void drawFrame(
+        Canvas canvas, float transformationValue, int left, int top, Rect source, Rect target, Paint paint
+    ) {
+        final int frame = Math.round(transformationValue / TRANSFORMATION_END * (frameCount - 1));
+        final int frameLeft = frame % columns * width;
+        final int frameTop = frame / columns * height;
+        source.set(frameLeft, frameTop, frameLeft + width, frameTop + height);
+        target.set(left, top, left + width, top + height);
+        canvas.drawBitmap(bitmap, source, target, paint);
+    }
+
+    private static Bitmap draw(GeometrySpec spec, AnimationState animationState, int frameCount, Paint paint, boolean rtl) {
+        final int columns = columns(frameCount);
+        final int rows = (frameCount + columns - 1) / columns;
+        final Bitmap atlas = Bitmap.createBitmap(spec.width * columns, spec.height * rows, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(atlas);
+
+        final float[] frame = new float[TransitionTable.FRAME_SIZE];
+        final float[] lines = new float[TransitionTable.LINES_SIZE];
+        final float[] batch = new float[TransitionTable.LINE_COUNT * 4];
+        for (int i = 0; i < frameCount; i++) {
+            final float value = TRANSFORMATION_END * i / (frameCount - 1);
+            spec.transitionTable.sampleLines(animationState.ordinal(), value, rtl, frame, lines);
+
+            final int saveCount = canvas.save();
+            canvas.translate(i % columns * spec.width, i / columns * spec.height);
+            MaterialMenuDrawable.drawLines(canvas, lines, batch, paint);
+            canvas.restoreToCount(saveCount);
+        }
+        return atlas;
+    }
+
+    /**
+     * @return most frames up to {@link #MAX_FRAME_COUNT} whose atlas takes at most a third of
+     * the cache budget, or 0 when fewer than {@link #MIN_FRAME_COUNT} fit
+     */
+    private static int frameCount(GeometrySpec spec) {
+        final long frameBytes = (long) spec.width * spec.height * 4;
+        final long budget = MaterialMenuBitmapCache.getMaxSize() / PREPARED_COUNT;
+        for (int frameCount = MAX_FRAME_COUNT; frameCount >= MIN_FRAME_COUNT; frameCount -= 2) {
+            final int columns = columns(frameCount);
+            final int rows = (frameCount + columns - 1) / columns;
+            if (columns * rows * frameBytes <= budget) return frameCount;
+        }
+        return 0;
+    }
+
+    private static int columns(int frameCount) {
+        return (int) Math.ceil(Math.sqrt(frameCount));
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2014 Balys Valentukevicius
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.balysv.materialmenu;
+
+import android.animation.Animator;
+import android.animation.Animator.AnimatorListener;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.animation.ValueAnimator.AnimatorUpdateListener;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * Drives a transformation offset from one value to another with an animator, on vsync
+ * time through {@link MaterialMenuScheduler}, or with a damped spring, and records
+ * transformation metrics. Shared by {@link MaterialMenuDrawable} and
+ * {@link MaterialMenuGraphDrawable}, which map the offset onto their own geometry.
+ * <p/>
+ * Must be used from the main thread.
+ */
+final class TransformationDriver {
+
+    interface Target {
+        /**
+         * @param value offset to draw, on every frame of a transformation. May overshoot
+         *              the target when driven by an underdamped spring.
+         */
+        void onTransformationUpdate(float value);
+
+        /**
+         * Called when a transformation arrives at its target, but not when it is cancelled or retargeted
+         */
+        void onTransformationEnd();
+
+        /**
+         * Called on frames stepped by the scheduler while frames are being missed
+         */
+        void onFrameBudgetExceeded();
+    }
+
+    private final Target target;
+
+    private final ValueAnimator animator;
+
+    private final MaterialMenuScheduler.Stepper stepper = new MaterialMenuScheduler.Stepper() {
+        @Override public boolean onFrame(long frameTimeNanos, boolean overBudget) {
+            return TransformationDriver.this.onFrame(frameTimeNanos, overBudget);
+        }
+    };
+
+    private long             duration;
+    private Interpolator     interpolator;
+    private AnimatorListener listener;
+    private float            from;
+    private float            to;
+    private float            value;
+    private float            velocity;
+    private long             lastFramePlayTime;
+    private float            lastFrameValue;
+    // animator is cancelled to restart in place, or ends into a target that may start the next one
+    private boolean          retargeting;
+    private boolean          ending;
+
+    private MaterialMenuMetrics metrics;
+    private int                 frames;
+    private long                firstFrame;
+    private long                lastFrame;
+
+    private Spring  spring;
+    // transformation stepped by MaterialMenuScheduler, either with the spring or on vsync time
+    private boolean frameDriven;
+    private boolean frameSpring;
+    private long    frameStartTime;
+    private long    lastFrameTime;
+    private long    frameDuration;
+    private boolean vsyncAnimationEnabled;
+
+    TransformationDriver(Target target, long duration) {
+        this.target = target;
+        this.duration = duration;
+
+        // animate a primitive fraction and map it onto the transformation range,
+        // so no value is boxed on animation frames
+        interpolator = new DecelerateInterpolator(3);
+        animator = ValueAnimator.ofFloat(0, 1);
+        animator.setInterpolator(interpolator);
+        animator.setDuration(duration);
+        animator.addUpdateListener(new AnimatorUpdateListener() {
+            @Override public void onAnimationUpdate(ValueAnimator animation) {
+                final float value = from + (to - from) * animation.getAnimatedFraction();
+
+                // remember how fast the shape is moving, so a retarget can carry the speed over
+                final long playTime = animation.getCurrentPlayTime();
+                if (playTime > lastFramePlayTime) {
+                    velocity = (value - lastFrameValue) * 1000 / (playTime - lastFramePlayTime);
+                }
+                lastFramePlayTime = playTime;
+                lastFrameValue = value;
+
+                update(value);
+            }
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override public void onAnimationStart(Animator animation) {
+                lastFramePlayTime = 0;
+                lastFrameValue = from;
+            }
+
+            @Override public void onAnimationEnd(Animator animation) {
+                if (retargeting) return;
+
+                velocity = 0;
+                ending = true;
+                try {
+                    finish();
+                } finally {
+                    ending = false;
+                }
+            }
+        });
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @param duration milliseconds a transformation between two icon states takes
+     */
+    void setDuration(long duration) {
+        this.duration = duration;
+        animator.setDuration(duration);
+    }
+
+    /**
+     * @param interpolator interpolator of duration based transformations, null for linear
+     */
+    void setInterpolator(Interpolator interpolator) {
+        this.interpolator = interpolator;
+        animator.setInterpolator(interpolator);
+    }
+
+    void setAnimationListener(AnimatorListener listener) {
+        if (this.listener != null) {
+            animator.removeListener(this.listener);
+        }
+        if (listener != null) {
+            animator.addListener(listener);
+        }
+        this.listener = listener;
+    }
+
+    void setMetrics(MaterialMenuMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    MaterialMenuMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param stiffness    spring stiffness, 0 to go back to duration based transformations
+     * @param dampingRatio 1 for no overshoot, less than 1 to bounce around the target
+     */
+    void setSpring(float stiffness, float dampingRatio) {
+        if (stiffness < 0 || dampingRatio <= 0) {
+            throw new IllegalArgumentException("Stiffness must not be negative and damping ratio must be positive");
+        }
+
+        if (stiffness == 0) {
+            spring = null;
+        } else if (spring == null) {
+            spring = new Spring(stiffness, dampingRatio);
+        } else {
+            spring.configure(stiffness, dampingRatio);
+        }
+
+        if (spring == null && frameDriven && frameSpring) {
+            // let the running spring land, later transformations use the animator
+            land();
+        }
+    }
+
+    /**
+     * @param enabled true to step duration based transformations on vsync time
+     */
+    void setVsyncAnimationEnabled(boolean enabled) {
+        if (vsyncAnimationEnabled == enabled) return;
+        vsyncAnimationEnabled = enabled;
+
+        // continue a running duration based transformation on the other clock, so only one drives it
+        if (spring == null && isRunning()) {
+            run(value, to, frameDriven ? 0 : velocity);
+        }
+    }
+
+    /**
+     * @return whether a transformation is being driven
+     */
+    boolean isRunning() {
+        return frameDriven || animator.isRunning() && !ending;
+    }
+
+    /**
+     * @return offset change per second of the running transformation, as far as it is known
+     */
+    float getVelocity() {
+        return frameDriven && frameSpring ? spring.velocity : velocity;
+    }
+
+    /**
+     * Run the transformation from one offset to another, taking over from a running one in
+     * place. Duration is scaled by the distance and shortened to keep at least the given speed
+     * when it points toward the target.
+     *
+     * @param velocity initial offset change per second
+     */
+    void run(float from, float to, float velocity) {
+        final boolean stepping = frameDriven;
+        cancel();
+
+        this.from = from;
+        this.to = to;
+        this.value = from;
+        frameSpring = spring != null;
+        // a retargeted transformation is timed as a new leg against its own duration
+        frames = 0;
+
+        if (spring != null) {
+            frameDuration = 0;
+            spring.reset(from, velocity, to);
+            schedule(stepping);
+            return;
+        }
+
+        final float distance = Math.abs(to - from);
+        long duration = (long) (this.duration * distance);
+        // only speed toward the target shortens the leg, a reversal starts over at its own pace
+        if (velocity != 0 && Math.signum(velocity) == Math.signum(to - from)) {
+            duration = Math.min(duration, (long) (distance / Math.abs(velocity) * 1000));
+        }
+        frameDuration = duration * 1000000;
+
+        if (vsyncAnimationEnabled) {
+            schedule(stepping);
+        } else {
+            animator.setDuration(duration);
+            animator.start();
+        }
+    }
+
+    /**
+     * Stop the running transformation where it is, without notifying the target
+     */
+    void cancel() {
+        frameDriven = false;
+        if (animator.isRunning() && !ending) {
+            retargeting = true;
+            animator.cancel();
+            retargeting = false;
+        }
+    }
+
+    /**
+     * Move the running transformation to its target right away and notify the target
+     *
+     * @return false when no transformation was running
+     */
+    boolean end() {
+        if (frameDriven) {
+            land();
+            return true;
+        }
+        if (animator.isRunning() && !ending) {
+            animator.end();
+            return true;
+        }
+        return false;
+    }
+
+    private void land() {
+        frameDriven = false;
+        update(to);
+        finish();
+    }
+
+    /**
+     * @param stepping whether the scheduler was stepping a transformation already, so the
+     *                 time since its last frame carries over
+     */
+    private void schedule(boolean stepping) {
+        if (!stepping) {
+            lastFrameTime = -1;
+        }
+        frameStartTime = -1;
+        frameDriven = true;
+        MaterialMenuScheduler.schedule(stepper);
+    }
+
+    /**
+     * Step a frame driven transformation, called by {@link MaterialMenuScheduler} once per display frame
+     *
+     * @return whether the next frame is needed too
+     */
+    private boolean onFrame(long frameTimeNanos, boolean overBudget) {
+        if (!frameDriven) return false;
+
+        if (overBudget) {
+            target.onFrameBudgetExceeded();
+        }
+
+        final boolean finished;
+        final float value;
+        if (frameSpring) {
+            spring.advance(lastFrameTime < 0 ? 0 : (frameTimeNanos - lastFrameTime) / 1e9f);
+            finished = spring.isAtRest();
+            // an underdamped spring overshoots the target, targets keep the offset in range
+            value = finished ? spring.target : spring.position;
+        } else {
+            if (frameStartTime < 0) {
+                frameStartTime = frameTimeNanos;
+            }
+            // position follows vsync time, a late frame catches up instead of stretching the transformation
+            final float fraction = frameDuration > 0
+                ? Math.min(1, (float) (frameTimeNanos - frameStartTime) / frameDuration)
+                : 1;
+            finished = fraction >= 1;
+            // a null interpolator is linear, as it is for the animator
+            final float eased = interpolator != null ? interpolator.getInterpolation(fraction) : fraction;
+            value = from + (to - from) * eased;
+        }
+        lastFrameTime = frameTimeNanos;
+
+        update(value);
+        if (finished) {
+            frameDriven = false;
+            finish();
+        }
+        // the target may have started another frame driven transformation
+        return frameDriven;
+    }
+
+    private void update(float value) {
+        this.value = value;
+        recordFrame();
+        target.onTransformationUpdate(value);
+    }
+
+    private void recordFrame() {
+        final MaterialMenuMetrics metrics = this.metrics;
+        if (metrics == null) return;
+
+        final long now = System.nanoTime();
+        if (frames == 0) {
+            firstFrame = now;
+        } else {
+            metrics.recordFrameInterval(now - lastFrame);
+        }
+        lastFrame = now;
+        frames++;
+    }
+
+    private void finish() {
+        final MaterialMenuMetrics metrics = this.metrics;
+        if (metrics != null && frames > 0) {
+            final long planned = frameSpring ? 0 : frameDuration;
+            metrics.recordTransition(frames, lastFrame - firstFrame, planned);
+        }
+        frames = 0;
+
+        target.onTransformationEnd();
+    }
+}